@@ -0,0 +1,863 @@
+// licensed according to http://code.kx.com/wiki/TermsAndConditions
+package kx;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import studio.kdb.Config;
+import studio.kdb.K;
+
+/**
+ * Decodes K objects from the bytes between the position and limit of bb. Connections extend it to read
+ * more of a message from the socket as it is needed, column tasks and pagers use it as it is over bytes
+ * already received.
+ */
+class Decoder {
+    byte[] t;
+    ByteBuffer bb;
+    boolean a;
+    // the whole message is in bb, so tables can be decoded column-parallel
+    boolean whole;
+    // bb maps a spilled message, large vectors are left in it and decoded as they are read
+    boolean mapped;
+    // the encoded elements of the lazy list being skipped
+    private byte[] raw;
+    private int rawLength;
+    // text encoding of the current message, ascii when it decodes 7-bit bytes as themselves
+    Charset cs;
+    boolean ascii;
+    // symbols up to SYM_MAX bytes long are decoded once, then found by their raw bytes, the table is
+    // allocated by the first symbol
+    static final int SYMS = 4096, SYM_MAX = 64;
+    private byte[][] symKeys;
+    private String[] symValues;
+    private int syms;
+
+    // a decoder over other bytes of the same message, for decoding part of it on another thread
+    Decoder copy(ByteBuffer bytes) {
+        Decoder d = new Decoder();
+        d.bb = bytes;
+        d.a = a;
+        d.cs = cs;
+        d.ascii = ascii;
+        return d;
+    }
+
+    // the bytes of an object are all in bb
+    void need(int n) throws IOException {
+        if (bb.remaining() < n)
+            throw new EOFException("Unexpected end of message");
+    }
+
+    boolean rb() throws IOException {
+        need(1);
+        return 1 == bb.get();
+    }
+
+    byte rx() throws IOException {
+        need(1);
+        return bb.get();
+    }
+
+    short rh() throws IOException {
+        need(2);
+        return bb.getShort();
+    }
+
+    int ri() throws IOException {
+        need(4);
+        return bb.getInt();
+    }
+
+    long rj() throws IOException {
+        need(8);
+        return bb.getLong();
+    }
+
+    float re() throws IOException {
+        need(4);
+        return bb.getFloat();
+    }
+
+    double rf() throws IOException {
+        need(8);
+        return bb.getDouble();
+    }
+
+    // guids are sent big-endian whatever the message byte order
+    UUID rg() throws IOException {
+        need(16);
+        long x = bb.getLong(), y = bb.getLong();
+        return a ? new UUID(Long.reverseBytes(x), Long.reverseBytes(y)) : new UUID(x, y);
+    }
+
+    void rg(long[] x, long[] y, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            need(16);
+            for (int k = i + Math.min(n - i, bb.remaining() >> 4); i < k; i++) {
+                x[i] = bb.getLong();
+                y[i] = bb.getLong();
+            }
+        }
+        if (a)
+            for (int i = 0; i < n; i++) {
+                x[i] = Long.reverseBytes(x[i]);
+                y[i] = Long.reverseBytes(y[i]);
+            }
+    }
+
+    char rc() throws IOException {
+        need(1);
+        return (char) (bb.get() & 0xff);
+    }
+
+    // bulk reads copy as much of a vector as the buffer holds in one go
+    void rb(boolean[] x, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            need(1);
+            for (int k = Math.min(n, i + bb.remaining()); i < k;)
+                x[i++] = 1 == bb.get();
+        }
+    }
+
+    void rx(byte[] x, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            need(1);
+            int k = Math.min(n - i, bb.remaining());
+            bb.get(x, i, k);
+            i += k;
+        }
+    }
+
+    void rh(short[] x, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            need(2);
+            int k = Math.min(n - i, bb.remaining() >> 1);
+            bb.asShortBuffer().get(x, i, k);
+            bb.position(bb.position() + (k << 1));
+            i += k;
+        }
+    }
+
+    void ri(int[] x, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            need(4);
+            int k = Math.min(n - i, bb.remaining() >> 2);
+            bb.asIntBuffer().get(x, i, k);
+            bb.position(bb.position() + (k << 2));
+            i += k;
+        }
+    }
+
+    void rj(long[] x, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            need(8);
+            int k = Math.min(n - i, bb.remaining() >> 3);
+            bb.asLongBuffer().get(x, i, k);
+            bb.position(bb.position() + (k << 3));
+            i += k;
+        }
+    }
+
+    void re(float[] x, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            need(4);
+            int k = Math.min(n - i, bb.remaining() >> 2);
+            bb.asFloatBuffer().get(x, i, k);
+            bb.position(bb.position() + (k << 2));
+            i += k;
+        }
+    }
+
+    void rf(double[] x, int n) throws IOException {
+        for (int i = 0; i < n;) {
+            need(8);
+            int k = Math.min(n - i, bb.remaining() >> 3);
+            bb.asDoubleBuffer().get(x, i, k);
+            bb.position(bb.position() + (k << 3));
+            i += k;
+        }
+    }
+
+    void charset() {
+        Charset x;
+        try {
+            x = Charset.forName(Config.getInstance().getEncoding());
+        }
+        catch (IllegalArgumentException ex) {
+            Logger.getLogger(Decoder.class.getName()).log(Level.WARNING, null, ex);
+            x = Charset.defaultCharset();
+        }
+        if (!x.equals(cs)) {
+            cs = x;
+            ascii = "az09`_.".equals(new String("az09`_.".getBytes(StandardCharsets.US_ASCII), cs));
+            symKeys = null;
+            symValues = null;
+            syms = 0;
+        }
+    }
+
+    private String decode(byte[] x, int o, int n) {
+        if (ascii) {
+            int i = o, e = o + n;
+            while (i < e && x[i] >= 0)
+                i++;
+            if (i == e)
+                return new String(x, o, n, StandardCharsets.ISO_8859_1);
+        }
+        return new String(x, o, n, cs);
+    }
+
+    // decodes n bytes at the current position as text
+    String rs(int n) throws IOException {
+        need(n);
+        byte[] x;
+        int o;
+        if (bb.hasArray()) {
+            x = bb.array();
+            o = bb.arrayOffset() + bb.position();
+            bb.position(bb.position() + n);
+        } else {
+            if (t == null || t.length < n)
+                t = new byte[Math.max(n, 256)];
+            bb.get(x = t, o = 0, n);
+        }
+        return decode(x, o, n);
+    }
+
+    String rsym() throws IOException {
+        int p = bb.position(), n = p;
+        for (;;n++) {
+            if (n == bb.limit()) {
+                need(n - p + 1);
+                n += bb.position() - p;
+                p = bb.position();
+            }
+            if (bb.get(n) == 0)
+                break;
+        }
+        String s = n - p > SYM_MAX ? rs(n - p) : intern(n - p);
+        bb.get();
+        return s;
+    }
+
+    // the n bytes at the position as a symbol, reusing the String decoded the last time they were seen
+    private String intern(int n) {
+        if (n == 0)
+            return "";
+        byte[] x;
+        int o;
+        if (bb.hasArray()) {
+            x = bb.array();
+            o = bb.arrayOffset() + bb.position();
+        } else {
+            if (t == null || t.length < n)
+                t = new byte[256];
+            for (int i = 0, p = bb.position(); i < n; i++)
+                t[i] = bb.get(p + i);
+            x = t;
+            o = 0;
+        }
+        int h = 0;
+        for (int i = o; i < o + n; i++)
+            h = 31 * h + x[i];
+        bb.position(bb.position() + n);
+        if (symKeys == null) {
+            symKeys = new byte[2 * SYMS][];
+            symValues = new String[2 * SYMS];
+        }
+        int m = symKeys.length - 1, slot = h * 0x9E3779B9 >>> 16 & m;
+        for (byte[] k; (k = symKeys[slot]) != null; slot = slot + 1 & m)
+            if (k.length == n) {
+                int i = 0;
+                while (i < n && k[i] == x[o + i])
+                    i++;
+                if (i == n)
+                    return symValues[slot];
+            }
+        String s = decode(x, o, n);
+        // a full table starts again rather than growing
+        if (++syms > SYMS) {
+            java.util.Arrays.fill(symKeys, null);
+            java.util.Arrays.fill(symValues, null);
+            syms = 1;
+            for (slot = h * 0x9E3779B9 >>> 16 & m; symKeys[slot] != null; slot = slot + 1 & m);
+        }
+        symKeys[slot] = java.util.Arrays.copyOfRange(x, o, o + n);
+        symValues[slot] = s;
+        return s;
+    }
+
+    K.KSymbol rs() throws IOException {
+        return new K.KSymbol(rsym());
+    }
+
+    K.UnaryPrimitive rup() throws IOException {
+        return new K.UnaryPrimitive(rx());
+    }
+
+    K.BinaryPrimitive rbp() throws IOException {
+        return new K.BinaryPrimitive(rx());
+    }
+
+    K.TernaryOperator rternary() throws IOException {
+        return new K.TernaryOperator(rx());
+    }
+
+    K.Function rfn() throws IOException {
+        K.KSymbol s = rs();
+        return new K.Function((K.KCharacterVector) r());
+    }
+
+    K.Feach rfeach() throws IOException {
+        return new K.Feach(r());
+    }
+
+    K.Fover rfover() throws IOException {
+        return new K.Fover(r());
+    }
+
+    K.Fscan rfscan() throws IOException {
+        return new K.Fscan(r());
+    }
+
+    K.FComposition rcomposition() throws IOException {
+        int n = ri();
+        Object[] objs = new Object[n];
+        for (int i = 0;i < n;i++)
+            objs[i] = r();
+
+        return new K.FComposition(objs);
+    }
+
+    K.FPrior rfPrior() throws IOException {
+        return new K.FPrior(r());
+    }
+
+    K.FEachRight rfEachRight() throws IOException {
+        return new K.FEachRight(r());
+    }
+
+    K.FEachLeft rfEachLeft() throws IOException {
+        return new K.FEachLeft(r());
+    }
+
+    K.Projection rproj() throws IOException {
+        int n = ri();
+        K.KList list = new K.KList(n);
+        K.KBase[] array = (K.KBase[]) list.getArray();
+        for (int i = 0;i < n;i++)
+            array[i] = r();
+
+        return new K.Projection(list);
+    }
+
+    K.Minute ru() throws IOException {
+        return new K.Minute(ri());
+    }
+
+    K.Month rm() throws IOException {
+        return new K.Month(ri());
+    }
+
+    K.Second rv() throws IOException {
+        return new K.Second(ri());
+    }
+
+    K.KTimespan rn() throws IOException {
+        return new K.KTimespan(rj());
+    }
+
+    K.KTime rt() throws IOException {
+        return new K.KTime(ri());
+    }
+
+    K.KDate rd() throws IOException {
+        return new K.KDate(ri());
+    }
+
+    K.KDatetime rz() throws IOException {
+        return new K.KDatetime(rf());
+    }
+
+    K.KTimestamp rp() throws IOException {
+        return new K.KTimestamp(rj());
+    }
+
+    // element widths of the vector types whose size follows from their length
+    private static final int[] WIDTH = {0, 1, 16, 0, 1, 2, 4, 8, 4, 8, 1, 0, 8, 4, 4, 8, 8, 4, 4, 4};
+
+    // offset just past the object at p, -1 for types the pre-scan does not handle
+    private int end(int p) {
+        int t = bb.get(p);
+        if (t < 0) {
+            if (t == -11) {
+                while (bb.get(++p) != 0);
+                return p + 1;
+            }
+            return t > -WIDTH.length && WIDTH[-t] > 0 ? p + 1 + WIDTH[-t] : -1;
+        }
+        if (t >= WIDTH.length)
+            return -1;
+        int n = bb.getInt(p + 2);
+        p += 6;
+        if (WIDTH[t] > 0)
+            return p + n * WIDTH[t];
+        if (t == 11) {
+            for (; n > 0; n--)
+                while (bb.get(p++) != 0);
+            return p;
+        }
+        if (t == 0)
+            for (; n > 0 && p >= 0; n--)
+                p = end(p);
+        return t == 0 ? p : -1;
+    }
+
+    // dictionary of a table, with the columns decoded on the fork join pool
+    private K.Dict rtable() throws IOException {
+        if (bb.get(bb.position()) != 99)
+            return (K.Dict) r();
+        rx();
+        K.KBase x = r();
+        int p = bb.position();
+        if (bb.get(p) != 0)
+            return new K.Dict(x, r());
+        int n = bb.getInt(p + 2);
+        int[] at = new int[n + 1];
+        at[0] = p + 6;
+        try {
+            for (int i = 0; i < n; i++)
+                if ((at[i + 1] = end(at[i])) < 0) {
+                    at[n] = -1;
+                    break;
+                }
+        }
+        catch (IndexOutOfBoundsException e) {
+            at[n] = -1;
+        }
+        if (n < 2 || at[n] < 0)
+            return new K.Dict(x, r());
+
+        K.KList y = new K.KList(n);
+        y.setAttr(bb.get(p + 1));
+        final K.KBase[] cols = (K.KBase[]) y.getArray();
+        List<RecursiveAction> tasks = new ArrayList<>();
+        final List<Integer> rest = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int t = bb.get(at[i]);
+            if (t > 0 && WIDTH[t] > 0)
+                tasks.add(task(cols, i, at[i]));
+            else
+                rest.add(i);
+        }
+        tasks.add(new RecursiveAction() {
+            protected void compute() {
+                try {
+                    for (int i : rest) {
+                        bb.position(at[i]);
+                        cols[i] = r();
+                    }
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        try {
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        bb.position(at[n]);
+        return new K.Dict(x, y);
+    }
+
+    // decodes the column at p on a decoder of its own over the same bytes
+    private RecursiveAction task(final K.KBase[] cols, final int i, int p) {
+        final Decoder d = copy(bb.asReadOnlyBuffer().order(bb.order()));
+        d.bb.position(p);
+        return new RecursiveAction() {
+            protected void compute() {
+                try {
+                    cols[i] = d.r();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    K.KBase r() throws IOException {
+        int i = 0, n, t = rx();
+        if (t < 0)
+            switch (t) {
+                case -1:
+                    return new K.KBoolean(rb());
+                case -2:
+                    return new K.KGuid(rg());
+                case -4:
+                    return new K.KByte(rx());
+                case -5:
+                    return new K.KShort(rh());
+                case -6:
+                    return new K.KInteger(ri());
+                case -7:
+                    return new K.KLong(rj());
+                case -8:
+                    return new K.KFloat(re());
+                case -9:
+                    return new K.KDouble(rf());
+                case -10:
+                    return new K.KCharacter(rc());
+                case -11:
+                    return rs();
+                case -12:
+                    return rp();
+                case -13:
+                    return rm();
+                case -14:
+                    return rd();
+                case -15:
+                    return rz();
+                case -16:
+                    return rn();
+                case -17:
+                    return ru();
+                case -18:
+                    return rv();
+                case -19:
+                    return rt();
+            }
+
+        if (t == 100)
+            return rfn(); // fn - lambda
+        if (t == 101)
+            return rup();  // unary primitive
+        if (t == 102)
+            return rbp();  // binary primitive
+        if (t == 103)
+            return rternary();
+        if (t == 104)
+            return rproj(); // fn projection
+        if (t == 105)
+            return rcomposition();
+
+        if (t == 106)
+            return rfeach(); // f'
+        if (t == 107)
+            return rfover(); // f/
+        if (t == 108)
+            return rfscan(); //f\
+        if (t == 109)
+            return rfPrior(); // f':
+        if (t == 110)
+            return rfEachRight(); // f/:
+        if (t == 111)
+            return rfEachLeft(); // f\:
+        if (t == 112) {
+            // dynamic load
+            rx();
+            return null;
+        }
+        if(t==127){
+          K.Dict d=new K.Dict(r(),r());
+          d.setAttr((byte)1);
+          return d;
+        }
+        if (t > 99) {
+            rx();
+            return null;
+        }
+        if (t == 99)
+            return new K.Dict(r(),r());
+        byte attr = rx();
+        if (t == 98)
+            return new K.Flip(whole ? rtable() : (K.Dict) r());
+        n = ri();
+        if (t == 0) {
+            K.KBase L = n >= K.KLazyList.PAGE ? lazy(n) : list(n);
+            L.setAttr(attr);
+            return L;
+        }
+        K.KBase v = mapped && n >= K.KMappedVector.PAGE && t > 0 && t < WIDTH.length && (WIDTH[t] > 0 && t != 10 || t == 11) ? mapped(t, n) : vector(t, n);
+        if (v != null)
+            v.setAttr(attr);
+        return v;
+    }
+
+    K.KList list(int n) throws IOException {
+        K.KList L = new K.KList(n);
+        K.KBase[] array = (K.KBase[]) L.getArray();
+        for (int i = 0; i < n; i++)
+            array[i] = r();
+        return L;
+    }
+
+    // a general list left encoded, its elements are copied as they are skipped and decoded a page at a time
+    private K.KBase lazy(int n) throws IOException {
+        int[] starts = new int[n + K.KLazyList.PAGE - 1 >>> K.KLazyList.SHIFT];
+        raw = new byte[1 << 16];
+        rawLength = 0;
+        try {
+            for (int i = 0; i < n; i++) {
+                if ((i & K.KLazyList.PAGE - 1) == 0)
+                    starts[i >>> K.KLazyList.SHIFT] = rawLength;
+                keepObject();
+            }
+            byte[] bytes = java.util.Arrays.copyOf(raw, rawLength);
+            return new K.KLazyList(new Pager(this, ByteBuffer.wrap(bytes).order(bb.order()), 0, 0, starts, K.KLazyList.SHIFT), n, bytes.length);
+        }
+        finally {
+            raw = null;
+        }
+    }
+
+    // copies the next n bytes to raw
+    private void keep(int n) throws IOException {
+        if (rawLength + n > raw.length)
+            raw = java.util.Arrays.copyOf(raw, Math.max(2 * raw.length, rawLength + n));
+        while (n > 0) {
+            need(1);
+            int k = Math.min(n, bb.remaining());
+            bb.get(raw, rawLength, k);
+            rawLength += k;
+            n -= k;
+        }
+    }
+
+    private int keepInt() throws IOException {
+        need(4);
+        int x = bb.getInt(bb.position());
+        keep(4);
+        return x;
+    }
+
+    private void keepSymbol() throws IOException {
+        for (;;) {
+            need(1);
+            int p = bb.position(), e = bb.limit();
+            while (p < e && bb.get(p) != 0)
+                p++;
+            boolean found = p < e;
+            keep(p - bb.position() + (found ? 1 : 0));
+            if (found)
+                return;
+        }
+    }
+
+    // copies the object at the position, reading exactly what r() would
+    private void keepObject() throws IOException {
+        need(1);
+        int t = bb.get(bb.position());
+        keep(1);
+        if (t < 0 && t > -WIDTH.length) {
+            if (t == -11)
+                keepSymbol();
+            else
+                keep(WIDTH[-t]);
+            return;
+        }
+        if (t == 100) {
+            keepSymbol();
+            keepObject();
+        } else if (t == 104 || t == 105) {
+            for (int n = keepInt(); n > 0; n--)
+                keepObject();
+        } else if (t >= 106 && t <= 111)
+            keepObject();
+        else if (t == 99 || t == 127) {
+            keepObject();
+            keepObject();
+        } else if (t > 99)
+            keep(1);
+        else {
+            keep(1);
+            if (t == 98) {
+                keepObject();
+                return;
+            }
+            int n = keepInt();
+            if (t == 0)
+                for (; n > 0; n--)
+                    keepObject();
+            else if (t == 11)
+                for (; n > 0; n--)
+                    keepSymbol();
+            else if (t == 10 || t > 0 && t < WIDTH.length)
+                keep(n * WIDTH[t]);
+        }
+    }
+
+    // a vector of the spilled message left in the file, the position is moved past it
+    private K.KBase mapped(int t, int n) {
+        int start = bb.position(), p = start;
+        int[] starts = null;
+        if (t == 11) {
+            starts = new int[n + K.KMappedVector.PAGE - 1 >>> K.KMappedVector.SHIFT];
+            for (int i = 0; i < n; i++, p++) {
+                if ((i & K.KMappedVector.PAGE - 1) == 0)
+                    starts[i >>> K.KMappedVector.SHIFT] = p;
+                while (bb.get(p) != 0)
+                    p++;
+            }
+            bb.position(p);
+        } else
+            bb.position(p + n * WIDTH[t]);
+        return new K.KMappedVector(new Pager(this, bb.duplicate().order(bb.order()), t, start, starts, K.KMappedVector.SHIFT), n);
+    }
+
+    // decodes pages of a mapped vector or a lazy list on a decoder of its own over their bytes, pages of
+    // fixed width elements are found from start, the others from the offsets of their first elements
+    private static class Pager implements K.KPagedVector.Pager {
+        private final Decoder d;
+        private final int t, start, shift;
+        private final int[] starts;
+
+        Pager(Decoder x, ByteBuffer bytes, int t, int start, int[] starts, int shift) {
+            d = x.copy(bytes);
+            this.t = t;
+            this.start = start;
+            this.starts = starts;
+            this.shift = shift;
+        }
+
+        public synchronized K.KBaseVector page(int first, int n) {
+            d.bb.position(starts != null ? starts[first >>> shift] : start + first * WIDTH[t]);
+            try {
+                return t == 0 ? d.list(n) : d.vector(t, n);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // the n elements of a vector of type t at the position
+    K.KBaseVector vector(int t, int n) throws IOException {
+        int i = 0;
+        switch (t) {
+            case 1: {
+                K.KBooleanVector B = new K.KBooleanVector(n);
+                boolean[] array = (boolean[]) B.getArray();
+                rb(array, n);
+                return B;
+            }
+            case 2: {
+                K.KGuidVector B = new K.KGuidVector(n);
+                rg(B.getMsbArray(), B.getLsbArray(), n);
+                return B;
+            }
+            case 4: {
+                K.KByteVector G = new K.KByteVector(n);
+                byte[] array = (byte[]) G.getArray();
+                rx(array, n);
+                return G;
+            }
+            case 5: {
+                K.KShortVector H = new K.KShortVector(n);
+                short[] array = (short[]) H.getArray();
+                rh(array, n);
+                return H;
+            }
+            case 6: {
+                K.KIntVector I = new K.KIntVector(n);
+                int[] array = (int[]) I.getArray();
+                ri(array, n);
+                return I;
+            }
+            case 7: {
+                K.KLongVector J = new K.KLongVector(n);
+                long[] array = (long[]) J.getArray();
+                rj(array, n);
+                return J;
+            }
+            case 8: {
+                K.KFloatVector E = new K.KFloatVector(n);
+                float[] array = (float[]) E.getArray();
+                re(array, n);
+                return E;
+            }
+            case 9: {
+                K.KDoubleVector F = new K.KDoubleVector(n);
+                double[] array = (double[]) F.getArray();
+                rf(array, n);
+                return F;
+            }
+            case 10: {
+                return new K.KCharacterVector(rs(n).toCharArray());
+            }
+            case 11: {
+                String[] array = new String[n];
+                for (;i < n;i++)
+                    array[i] = rsym();
+                return K.KSymbolVector.of(array);
+            }
+            case 12: {
+                K.KTimestampVector P = new K.KTimestampVector(n);
+                long[] array = (long[]) P.getArray();
+                rj(array, n);
+                return P;
+            }
+            case 13: {
+                K.KMonthVector M = new K.KMonthVector(n);
+                int[] array = (int[]) M.getArray();
+                ri(array, n);
+                return M;
+            }
+            case 14: {
+                K.KDateVector D = new K.KDateVector(n);
+                int[] array = (int[]) D.getArray();
+                ri(array, n);
+                return D;
+            }
+            case 15: {
+                K.KDatetimeVector Z = new K.KDatetimeVector(n);
+                double[] array = (double[]) Z.getArray();
+                rf(array, n);
+                return Z;
+            }
+            case 16:{
+                K.KTimespanVector N = new K.KTimespanVector(n);
+                long[] array = (long[]) N.getArray();
+                rj(array, n);
+                return N;
+            }
+            case 17: {
+                K.KMinuteVector U = new K.KMinuteVector(n);
+                int[] array = (int[]) U.getArray();
+                ri(array, n);
+                return U;
+            }
+            case 18: {
+                K.KSecondVector V = new K.KSecondVector(n);
+                int[] array = (int[]) V.getArray();
+                ri(array, n);
+                return V;
+            }
+            case 19: {
+                K.KTimeVector T = new K.KTimeVector(n);
+                int[] array = (int[]) T.getArray();
+                ri(array, n);
+                return T;
+            }
+        }
+        return null;
+    }
+}
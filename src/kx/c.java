@@ -23,25 +23,60 @@ types
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.LinkedList;
-import java.util.UUID;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import javax.swing.*;
+import studio.kdb.BufferPool;
 import studio.kdb.Config;
 import studio.kdb.K;
+import studio.kdb.MemoryBudget;
+import studio.kdb.Subscription;
 
-public class c {
+public class c extends Decoder {
     DataInputStream inputStream;
     OutputStream outputStream;
-    byte[] b, B;
-    int j;
+    SocketChannel ch;
+    byte[] b;
+    ByteBuffer W;
+    // compressed messages: zb holds compressed bytes not yet inflated into b, the state of the inflater is kept between calls
+    ByteBuffer zb, Z;
+    int zs, zp, zf, zi, zl;
+    final int[] aa = new int[256];
     private JFrame frame;
-    int J;
-    boolean a;
-    int rxBufferSize;
+    boolean loopback;
+    int rxBufferSize, capability;
+    // rem bytes of the message are still on the socket after those in bb
+    int rem, msgLength;
+    private ProgressMonitor pm;
+    private BufferPool pool;
+    private MemoryBudget budget;
+    private volatile Subscription subscription;
+    private final ByteBuffer H = ByteBuffer.allocate(8);
+
+    public void setBufferPool(BufferPool pool) {
+        this.pool = pool;
+    }
+
+    // messages the budget does not admit are skipped and fail with a K4Exception
+    public void setMemoryBudget(MemoryBudget budget) {
+        this.budget = budget;
+    }
+
+    // async messages are passed to s instead of being thrown away
+    public void setSubscription(Subscription s) {
+        subscription = s;
+    }
 
     public void setFrame(JFrame frame) {
         this.frame = frame;
@@ -52,6 +87,9 @@ public class c {
         inputStream = new DataInputStream(s.getInputStream());
         outputStream = s.getOutputStream();
         rxBufferSize=s.getReceiveBufferSize();
+        ch = s.getChannel();
+        loopback = s.getInetAddress().isLoopbackAddress();
+        W = null;
     }
 
     public void close() {
@@ -79,6 +117,11 @@ public class c {
         finally {
             frame = null;
             closed = true;
+            synchronized (inFlight) {
+                IOException e = new IOException("Connection closed");
+                for (CompletableFuture<K.KBase> f; (f = inFlight.poll()) != null;)
+                    f.completeExceptionally(e);
+            }
         }
     }
 
@@ -100,7 +143,11 @@ public class c {
             super(s);
         }
     }
-    private final java.util.List responses = java.util.Collections.synchronizedList(new LinkedList());
+    public static final int MAX_IN_FLIGHT = 64;
+    // requests written and not yet answered, kdb+ answers sync requests in the order it receives them
+    private final Queue<CompletableFuture<K.KBase>> inFlight = new ConcurrentLinkedQueue<>();
+    private final Queue<CompletableFuture<K.KBase>> calls = new ConcurrentLinkedQueue<>();
+    private final Semaphore window = new Semaphore(MAX_IN_FLIGHT);
 
     boolean closed = true;
 
@@ -108,31 +155,51 @@ public class c {
         return closed;
     }
 
-    public K.KBase getResponse() throws Throwable {
-        Object obj;
-
-        synchronized (responses) {
-            if (responses.size() == 0)
-                try {
-                    responses.wait();
-                }
-                catch (InterruptedException e) {
-                }
-
-            obj = responses.remove(0);
+    // sends x as a sync request, blocks while MAX_IN_FLIGHT requests are already waiting for their responses
+    public CompletableFuture<K.KBase> submit(K.KBase x) throws IOException {
+        try {
+            window.acquire();
         }
+        catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting to send request");
+        }
+        CompletableFuture<K.KBase> f = new CompletableFuture<>();
+        f.whenComplete((r, t) -> window.release());
+        synchronized (inFlight) {
+            if (closed) {
+                f.completeExceptionally(new IOException("Connection closed"));
+                return f;
+            }
+            inFlight.add(f);
+            try {
+                w(1, x);
+            }
+            catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+        return f;
+    }
 
-        if (obj instanceof Throwable)
-            throw (Throwable) obj;
-
-        return (K.KBase) obj;
+    public K.KBase getResponse() throws Throwable {
+        CompletableFuture<K.KBase> f = calls.poll();
+        if (f == null)
+            throw new IllegalStateException("No request outstanding");
+        try {
+            return f.get();
+        }
+        catch (ExecutionException e) {
+            throw e.getCause();
+        }
     }
 
   private void startReader() {
         Runnable runner = new Runnable() {
             public void run() {
                 while (!closed) {
-                    Object o = null;
+                    Object o;
+                    boolean failed = false;
 
                     try {
                         o = k();
@@ -142,13 +209,17 @@ public class c {
                     }
                     catch (Throwable t) {
                         o = t;
-                        close();
+                        failed = true;
                     }
 
-                    synchronized (responses) {
-                        responses.add(o);
-                        responses.notify();
-                    }
+                    CompletableFuture<K.KBase> f = inFlight.poll();
+                    if (f != null)
+                        if (o instanceof Throwable)
+                            f.completeExceptionally((Throwable) o);
+                        else
+                            f.complete((K.KBase) o);
+                    if (failed)
+                        close();
                 }
             }
         };
@@ -158,7 +229,7 @@ public class c {
     }
 
     public void reconnect(boolean retry) throws IOException,K4Exception {
-        Socket s=new Socket();
+        Socket s = !useTLS && Config.getInstance().isNioTransport() ? SocketChannel.open().socket() : new Socket();
         s.setReceiveBufferSize(1024*1024);
         s.connect(new InetSocketAddress(host,port));
         
@@ -185,6 +256,7 @@ public class c {
                 reconnect(false);
             else
                 throw new K4Exception("Authentication failed");
+        capability = bytes[0];
         closed = false;
         startReader();
     }
@@ -200,413 +272,182 @@ public class c {
         this.useTLS=useTLS;
     }
 
-    boolean rb() {
-        return 1 == b[j++];
-    }
-
-    short rh() {
-        int x = b[j++], y = b[j++];
-        return (short) (a ? x & 0xff | y << 8 : x << 8 | y & 0xff);
-    }
-
-    int ri() {
-        int x = rh(), y = rh();
-        return a ? x & 0xffff | y << 16 : x << 16 | y & 0xffff;
-    }
-
-    long rj() {
-        int x = ri(), y = ri();
-        return a ? x & 0xffffffffL | (long) y << 32 : (long) x << 32 | y & 0xffffffffL;
-    }
-
-    float re() {
-        return Float.intBitsToFloat(ri());
-    }
-
-    double rf() {
-        return Double.longBitsToDouble(rj());
-    }
-    
-    UUID rg(){boolean oa=a;a=false;UUID g=new UUID(rj(),rj());a=oa;return g;}
-
-    char rc() {
-        return (char) (b[j++] & 0xff);
+    // reads more of the message from the socket, inflating it when it is compressed
+    void need(int n) throws IOException {
+        if (bb.remaining() < n)
+            if (zb != null)
+                inflate(n);
+            else
+                bb = fill(bb, n);
     }
 
-    K.KSymbol rs() {
-        int n=j;
-        for (;b[n] != 0;)
-            ++n;
-        String s=null;
+    // reads from the socket until x has at least n bytes remaining
+    private ByteBuffer fill(ByteBuffer x, int n) throws IOException {
+        if (n > x.capacity()) {
+            ByteBuffer t = x.isDirect() ? ByteBuffer.allocateDirect(Math.max(n, 2 * x.capacity())) : ByteBuffer.allocate(Math.max(n, 2 * x.capacity()));
+            x = t.order(x.order()).put(x);
+        } else
+            x.compact();
         try {
-            s = new String(b, j, n-j, Config.getInstance().getEncoding());
-        } catch (UnsupportedEncodingException ex) {
-            Logger.getLogger(c.class.getName()).log(Level.WARNING, null, ex);
+            while (x.position() < n) {
+                if (pm != null && pm.isCanceled())
+                    throw new IOException("Cancelled by user");
+                if (rem == 0)
+                    throw new EOFException("Unexpected end of message");
+                if (x.remaining() > rem)
+                    x.limit(x.position() + rem);
+                int m = read(x);
+                x.limit(x.capacity());
+                rem -= m;
+                progress();
+            }
         }
-        j=n;
-        ++j;
-        return new K.KSymbol(s);
-    }
-
-    K.UnaryPrimitive rup() {
-        return new K.UnaryPrimitive(b[j++]);
-    }
-
-    K.BinaryPrimitive rbp() {
-        return new K.BinaryPrimitive(b[j++]);
-    }
-
-    K.TernaryOperator rternary() {
-        return new K.TernaryOperator(b[j++]);
-    }
-
-    K.Function rfn() {
-        K.KSymbol s = rs();
-        return new K.Function((K.KCharacterVector) r());
-    }
-
-    K.Feach rfeach() {
-        return new K.Feach(r());
-    }
-
-    K.Fover rfover() {
-        return new K.Fover(r());
-    }
-
-    K.Fscan rfscan() {
-        return new K.Fscan(r());
-    }
-
-    K.FComposition rcomposition() {
-        int n = ri();
-        Object[] objs = new Object[n];
-        for (int i = 0;i < n;i++)
-            objs[i] = r();
-
-        return new K.FComposition(objs);
+        finally {
+            x.flip();
+        }
+        return x;
     }
 
-    K.FPrior rfPrior() {
-        return new K.FPrior(r());
+    private int read(ByteBuffer x) throws IOException {
+        int m;
+        if (ch != null)
+            m = ch.read(x);
+        else if ((m = inputStream.read(x.array(), x.arrayOffset() + x.position(), x.remaining())) > 0)
+            x.position(x.position() + m);
+        if (m < 0)
+            throw new EOFException("Connection closed while receiving message");
+        return m;
     }
 
-    K.FEachRight rfEachRight() {
-        return new K.FEachRight(r());
+    private void progress() {
+        if (pm != null) {
+            int total = msgLength - rem;
+            pm.setProgress(total);
+            pm.setNote((total / 1024) + " of " + (msgLength / 1024) + " kB");
+        }
     }
 
-    K.FEachLeft rfEachLeft() {
-        return new K.FEachLeft(r());
+    private void skip(int n) throws IOException {
+        for (ByteBuffer t = ByteBuffer.allocate(Math.min(n, 1 << 16)); n > 0; t.clear()) {
+            t.limit(Math.min(n, t.capacity()));
+            n -= read(t);
+        }
     }
 
-    K.Projection rproj() {
-        int n = ri();
-        K.KList list = new K.KList(n);
-        K.KBase[] array = (K.KBase[]) list.getArray();
-        for (int i = 0;i < n;i++)
-            array[i] = r();
+    public static final int PARALLEL_MIN = 1 << 20;
 
-        return new K.Projection(list);
-    }
+    // grows through the buffer pool so a message is serialised straight into the array that is sent
+    private static class Out extends OutputStream {
+        final BufferPool pool;
+        byte[] b;
+        int n;
 
-    K.Minute ru() {
-        return new K.Minute(ri());
-    }
+        Out(BufferPool pool, int n) {
+            this.pool = pool;
+            b = pool != null ? pool.acquire(n) : new byte[n];
+            this.n = n;
+        }
 
-    K.Month rm() {
-        return new K.Month(ri());
-    }
+        private void ensure(int k) {
+            if (n + k > b.length) {
+                int m = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) n + k, 2L * b.length));
+                byte[] t = pool != null ? pool.acquire(m) : new byte[m];
+                System.arraycopy(b, 0, t, 0, n);
+                release();
+                b = t;
+            }
+        }
 
-    K.Second rv() {
-        return new K.Second(ri());
-    }
+        public void write(int x) {
+            ensure(1);
+            b[n++] = (byte) x;
+        }
 
-    K.KTimespan rn() {
-        return new K.KTimespan(rj());
-    }
+        public void write(byte[] x, int off, int len) {
+            ensure(len);
+            System.arraycopy(x, off, b, n, len);
+            n += len;
+        }
 
-    K.KTime rt() {
-        return new K.KTime(ri());
+        void release() {
+            if (pool != null)
+                pool.release(b);
+        }
     }
 
-    K.KDate rd() {
-        return new K.KDate(ri());
+    void w(int i,K.KBase x) throws IOException {
+        Out o = new Out(pool, 8);
+        Out z = null;
+        try {
+            x.serialise(o);
+            byte[] m = o.b;
+            int n = o.n;
+            m[0] = 0;
+            m[1] = (byte) i;
+            m[2] = m[3] = 0;
+            putInt(m, 4, n);
+            int threshold = Config.getInstance().getCompressionThreshold();
+            if (capability > 0 && !loopback && threshold >= 0 && n > threshold) {
+                z = new Out(pool, n / 2);
+                if (compress(m, n, z.b, n / 2)) {
+                    m = z.b;
+                    n = getInt(m, 4);
+                }
+            }
+            outputStream.write(m, 0, n);
+        }
+        finally {
+            o.release();
+            if (z != null)
+                z.release();
+        }
     }
 
-    K.KDatetime rz() {
-        return new K.KDatetime(rf());
+    private static void putInt(byte[] x, int o, int v) {
+        x[o] = (byte) (v >> 24);
+        x[o + 1] = (byte) (v >> 16);
+        x[o + 2] = (byte) (v >> 8);
+        x[o + 3] = (byte) v;
     }
 
-    K.KTimestamp rp() {
-        return new K.KTimestamp(rj());
+    private static int getInt(byte[] x, int o) {
+        return (x[o] & 0xff) << 24 | (x[o + 1] & 0xff) << 16 | (x[o + 2] & 0xff) << 8 | x[o + 3] & 0xff;
     }
 
-    K.KBase r() {
-        int i = 0, n, t = b[j++];
-        if (t < 0)
-            switch (t) {
-                case -1:
-                    return new K.KBoolean(rb());
-                case -2:
-                    return new K.KGuid(rg());
-                case -4:
-                    return new K.KByte(b[j++]);
-                case -5:
-                    return new K.KShort(rh());
-                case -6:
-                    return new K.KInteger(ri());
-                case -7:
-                    return new K.KLong(rj());
-                case -8:
-                    return new K.KFloat(re());
-                case -9:
-                    return new K.KDouble(rf());
-                case -10:
-                    return new K.KCharacter(rc());
-                case -11:
-                    return rs();
-                case -12:
-                    return rp();
-                case -13:
-                    return rm();
-                case -14:
-                    return rd();
-                case -15:
-                    return rz();
-                case -16:
-                    return rn();
-                case -17:
-                    return ru();
-                case -18:
-                    return rv();
-                case -19:
-                    return rt();
-            }
-
-        if (t == 100)
-            return rfn(); // fn - lambda
-        if (t == 101)
-            return rup();  // unary primitive
-        if (t == 102)
-            return rbp();  // binary primitive
-        if (t == 103)
-            return rternary();
-        if (t == 104)
-            return rproj(); // fn projection
-        if (t == 105)
-            return rcomposition();
-
-        if (t == 106)
-            return rfeach(); // f'
-        if (t == 107)
-            return rfover(); // f/
-        if (t == 108)
-            return rfscan(); //f\
-        if (t == 109)
-            return rfPrior(); // f':
-        if (t == 110)
-            return rfEachRight(); // f/:
-        if (t == 111)
-            return rfEachLeft(); // f\:
-        if (t == 112) {
-            // dynamic load
-            j++;
-            return null;
-        }
-        if(t==127){
-          K.Dict d=new K.Dict(r(),r());
-          d.setAttr((byte)1);
-          return d;
-        }
-        if (t > 99) {
-            j++;
-            return null;
-        }
-        if (t == 99)
-            return new K.Dict(r(),r());
-        byte attr = b[j++];
-        if (t == 98)
-            return new K.Flip((K.Dict) r());
-        n = ri();
-        switch (t) {
-            case 0: {
-                K.KList L = new K.KList(n);
-                L.setAttr(attr);
-                K.KBase[] array = (K.KBase[]) L.getArray();
-                for (;i < n;i++)
-                    array[i] = r();
-                return L;
-            }
-            case 1: {
-                K.KBooleanVector B = new K.KBooleanVector(n);
-                B.setAttr(attr);
-                boolean[] array = (boolean[]) B.getArray();
-                for (;i < n;i++)
-                    array[i] = rb();
-                return B;
-            }
-            case 2: {
-                K.KGuidVector B = new K.KGuidVector(n);
-                B.setAttr(attr);
-                UUID[] array = (UUID[]) B.getArray();
-                for (;i < n;i++)
-                    array[i] = rg();
-                return B;
-            }
-            case 4: {
-                K.KByteVector G = new K.KByteVector(n);
-                G.setAttr(attr);
-                byte[] array = (byte[]) G.getArray();
-                for (;i < n;i++)
-                    array[i] = b[j++];
-                return G;
-            }
-            case 5: {
-                K.KShortVector H = new K.KShortVector(n);
-                H.setAttr(attr);
-                short[] array = (short[]) H.getArray();
-                for (;i < n;i++)
-                    array[i] = rh();
-                return H;
-            }
-            case 6: {
-                K.KIntVector I = new K.KIntVector(n);
-                I.setAttr(attr);
-                int[] array = (int[]) I.getArray();
-                for (;i < n;i++)
-                    array[i] = ri();
-                return I;
-            }
-            case 7: {
-                K.KLongVector J = new K.KLongVector(n);
-                J.setAttr(attr);
-                long[] array = (long[]) J.getArray();
-                for (;i < n;i++)
-                    array[i] = rj();
-                return J;
-            }
-            case 8: {
-                K.KFloatVector E = new K.KFloatVector(n);
-                E.setAttr(attr);
-                float[] array = (float[]) E.getArray();
-                for (;i < n;i++)
-                    array[i] = re();
-                return E;
-            }
-            case 9: {
-                K.KDoubleVector F = new K.KDoubleVector(n);
-                F.setAttr(attr);
-                double[] array = (double[]) F.getArray();
-                for (;i < n;i++)
-                    array[i] = rf();
-                return F;
-            }
-            case 10: {
-                K.KCharacterVector C=null;
-                try{
-                    char[] array=new String(b,j,n, Config.getInstance().getEncoding()).toCharArray();
-                    C = new K.KCharacterVector(array);
-                    C.setAttr(attr);
-                }catch(UnsupportedEncodingException e){
-                    Logger.getLogger(c.class.getName()).log(Level.WARNING, null, e);
-                }
-                j+=n;
-                return C;
-            }
-            case 11: {
-                K.KSymbolVector S = new K.KSymbolVector(n);
-                S.setAttr(attr);
-                String[] array = (String[]) S.getArray();
-                for (;i < n;i++)
-                    array[i] = rs().s;
-                return S;
-            }
-            case 12: {
-                K.KTimestampVector P = new K.KTimestampVector(n);
-                P.setAttr(attr);
-                long[] array = (long[]) P.getArray();
-                for (; i < n; i++) {
-                    array[i] = rj();
-                }
-                return P;
-            }
-            case 13: {
-                K.KMonthVector M = new K.KMonthVector(n);
-                M.setAttr(attr);
-                int[] array = (int[]) M.getArray();
-                for (;i < n;i++)
-                    array[i] = ri();
-                return M;
-            }
-            case 14: {
-                K.KDateVector D = new K.KDateVector(n);
-                D.setAttr(attr);
-                int[] array = (int[]) D.getArray();
-                for (;i < n;i++)
-                    array[i] = ri();
-                return D;
-            }
-            case 15: {
-                K.KDatetimeVector Z = new K.KDatetimeVector(n);
-                Z.setAttr(attr);
-                double[] array = (double[]) Z.getArray();
-                for (;i < n;i++)
-                    array[i] = rf();
-                return Z;
-            }
-            case 16:{
-                K.KTimespanVector N = new K.KTimespanVector(n);
-                N.setAttr(attr);
-                long[] array = (long[]) N.getArray();
-                for (; i < n; i++) {
-                    array[i] = rj();
-                }
-                return N;
-            }
-            case 17: {
-                K.KMinuteVector U = new K.KMinuteVector(n);
-                U.setAttr(attr);
-                int[] array = (int[]) U.getArray();
-                for (;i < n;i++)
-                    array[i] = ri();
-                return U;
-            }
-            case 18: {
-                K.KSecondVector V = new K.KSecondVector(n);
-                V.setAttr(attr);
-                int[] array = (int[]) V.getArray();
-                for (;i < n;i++)
-                    array[i] = ri();
-                return V;
+    // kdb+ IPC compression of the t byte message x into y, false if it would not fit in e bytes
+    private static boolean compress(byte[] x, int t, byte[] y, int e) {
+        int[] aa = new int[256];
+        int s = 8, p = 8, d = 12, f = 0, i = 0;
+        System.arraycopy(x, 0, y, 0, 4);
+        y[2] = 1;
+        while (s < t) {
+            if (i == 0) {
+                if (d > e - 17)
+                    return false;
+                y[f = d++] = 0;
+                i = 1;
             }
-            case 19: {
-                K.KTimeVector T = new K.KTimeVector(n);
-                T.setAttr(attr);
-                int[] array = (int[]) T.getArray();
-                for (;i < n;i++)
-                    array[i] = ri();
-                return T;
+            int h = 0, r = 0;
+            if (s > t - 3 || 0 == (r = aa[h = 0xff & (x[s] ^ x[s + 1])]) || x[s] != x[r] || x[s + 1] != x[r + 1])
+                y[d++] = x[s++];
+            else {
+                int n = 0, q = Math.min(255, t - s - 2);
+                while (n < q && x[r + 2 + n] == x[s + 2 + n])
+                    n++;
+                y[f] |= i;
+                y[d++] = (byte) h;
+                y[d++] = (byte) n;
+                for (s += 2; p < s - 1; p++)
+                    aa[(0xff & x[p]) ^ (0xff & x[p + 1])] = p;
+                p = s += n;
             }
+            for (; p < s - 1; p++)
+                aa[(0xff & x[p]) ^ (0xff & x[p + 1])] = p;
+            i = (i << 1) & 0xff;
         }
-        return null;
-    }
-
-    void w(int i,K.KBase x) throws IOException {
-        java.io.ByteArrayOutputStream baosBody = new ByteArrayOutputStream();
-        java.io.DataOutputStream dosBody = new DataOutputStream(baosBody);
-        x.serialise(dosBody);
-
-        java.io.ByteArrayOutputStream baosHeader = new ByteArrayOutputStream();
-        java.io.DataOutputStream dosHeader = new DataOutputStream(baosHeader);
-        dosHeader.writeByte(0);
-        dosHeader.writeByte(i);
-        dosHeader.writeByte(0);
-        dosHeader.writeByte(0);
-        int msgSize = 8 + dosBody.size();
-        K.write(dosHeader,msgSize);
-        byte[] b = baosHeader.toByteArray();
-        outputStream.write(b);
-        b = baosBody.toByteArray();
-        outputStream.write(b);
+        putInt(y, 4, d);
+        putInt(y, 8, t);
+        return true;
     }
 
     public static class K4Exception extends Exception {
@@ -617,109 +458,218 @@ public class c {
 
 
     public Object k() throws K4Exception,IOException {
-        boolean responseMsg=false;
-        boolean c=false;
         synchronized(inputStream){
-            while(!responseMsg){ // throw away incoming aync, and error out on incoming sync
-                inputStream.readFully(b = new byte[8]);
-                a = b[0] == 1;
-                c = b[2] == 1;
-                byte msgType=b[1];
+            ByteBuffer h = H;
+            boolean c;
+            for (;;) { // pass incoming async to the subscription or throw it away, and error out on incoming sync
+                for (h.clear(); h.hasRemaining();)
+                    read(h);
+                a = h.get(0) == 1;
+                c = h.get(2) == 1;
+                byte msgType=h.get(1);
                 if(msgType==1){close();throw new IOException("Cannot process sync msg from remote");}
-                responseMsg=msgType == 2;
-                j = 4;
-
-                final int msgLength = ri() - 8;
-   
-                final String message = "Receiving "+(c?"compressed ":"")+"data ...";
-                final String note = "0 of " + (msgLength / 1024) + " kB";
-                String title = "Studio for kdb+";
-                UIManager.put("ProgressMonitor.progressText",title);
+                msgLength = h.order(a ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN).getInt(4) - 8;
+                if (msgType == 2)
+                    break;
+                Subscription s = subscription;
+                if (s == null)
+                    skip(msgLength);
+                else
+                    try {
+                        Object o = body(c);
+                        if (o != null)
+                            s.offer((K.KBase) o);
+                    }
+                    catch (K4Exception e) {
+                    }
+            }
 
-                final int min = 0;
-                final int max = msgLength;
-                ProgressMonitor pm = new ProgressMonitor(frame,message,note,min,max);
+            final String message = "Receiving "+(c?"compressed ":"")+"data ...";
+            final String note = "0 of " + (msgLength / 1024) + " kB";
+            String title = "Studio for kdb+";
+            UIManager.put("ProgressMonitor.progressText",title);
+
+            pm = new ProgressMonitor(frame,message,note,0,msgLength);
+            try {
+                pm.setMillisToDecideToPopup(300);
+                pm.setMillisToPopup(100);
+                pm.setProgress(0);
+                return body(c);
+            }
+            finally {
+                pm.close();
+                pm = null;
+            }
+        }
+    }
 
-                try {
-                    pm.setMillisToDecideToPopup(300);
-                    pm.setMillisToPopup(100);
-                    pm.setProgress(0);
-
-                    b = new byte[msgLength];
-                    int total = 0;
-                    int packetSize = 1 + msgLength / 100;
-                    if (packetSize < rxBufferSize)
-                        packetSize = rxBufferSize;
-
-                    while (total < msgLength) {
-                        if (pm.isCanceled())
-                            throw new IOException("Cancelled by user");
-
-                        int remainder = msgLength - total;
-                        if (remainder < packetSize)
-                            packetSize = remainder;
-
-                        total += inputStream.read(b,total,packetSize);
-                        pm.setProgress(total);
-                        pm.setNote((total / 1024) + " of " + (msgLength / 1024) + " kB");
-                    }
-                }
-                finally {
-                    pm.close();
+    private Object body(boolean c) throws K4Exception,IOException {
+        ByteOrder order = H.order();
+        charset();
+        try {
+            // the body is decoded while it is still arriving, compressed bodies are inflated as they arrive
+            boolean parallel = Config.getInstance().isParallelDecode() && msgLength >= PARALLEL_MIN && ForkJoinPool.getCommonPoolParallelism() > 1;
+            boolean streaming = Config.getInstance().isStreamingDecode() && !parallel;
+            whole = parallel;
+            int window = Math.max(rxBufferSize, 1 << 16);
+            rem = msgLength;
+            if (c) {
+                if (Z == null || Z.capacity() != window)
+                    Z = ByteBuffer.allocate(window);
+                Z.order(order).limit(0);
+                zb = fill(Z, 4);
+                zl = zb.getInt();
+                admit(zl, MemoryBudget.UNKNOWN, !streaming, false);
+                zs = zp = 8;
+                zi = 0;
+                bb = ByteBuffer.wrap(b = acquire(zl), 0, 8).order(order);
+                bb.position(8);
+                need(streaming ? 1 : zl - 8);
+            } else {
+                boolean spill;
+                if (streaming) {
+                    if (W == null || W.capacity() != window)
+                        W = ch != null ? ByteBuffer.allocateDirect(window) : ByteBuffer.allocate(window);
+                    bb = W;
+                    bb.order(order).limit(0);
+                    need(1);
+                    spill = admit(msgLength, bb.get(bb.position()), false, true);
+                } else
+                    spill = admit(msgLength, MemoryBudget.UNKNOWN, true, true);
+                if (spill) {
+                    bb = spill(streaming ? bb : null);
+                    bb.order(order);
+                    mapped = true;
+                    whole = false;
+                } else if (!streaming) {
+                    bb = ByteBuffer.wrap(b = acquire(msgLength));
+                    bb.order(order).limit(0);
+                    need(msgLength);
                 }
             }
-            if (c)
-                u();  
-            else
-                j = 0;
 
-            if (b[0] == -128) {
-                j = 1;
-                throw new K4Exception(rs().toString(true));
+            if (bb.get(bb.position()) == -128) {
+                bb.get();
+                K4Exception e = new K4Exception(rs().toString(true));
+                skip(rem);
+                throw e;
             }
-            return r();
+            Object o = r();
+            skip(rem);
+            return o;
+        }
+        finally {
+            if (pool != null)
+                pool.release(b);
+            b = null;
+            bb = zb = null;
+            rem = 0;
+            whole = mapped = false;
         }
     }
 
-    private void u() {
-        int n = 0, r = 0, f = 0, s = 8, p = s;
-        short i = 0;
-        j = 0;
-        byte[] dst = new byte[ri()];
-        int d = j;
-        int[] aa = new int[256];
-        while (s < dst.length) {
-            if (i == 0) {
-                f = 0xff & (int) b[d++];
-                i = 1;
+    // checks a body of size bytes against the budget before it is allocated, skipping it if refused,
+    // true when it is to be spilled to a mapped file instead
+    private boolean admit(long size, int type, boolean buffered, boolean spillable) throws K4Exception, IOException {
+        if (budget == null)
+            return false;
+        long estimate = MemoryBudget.estimate(size, type) + (buffered ? size : 0);
+        MemoryBudget.Decision d = budget.admit(estimate, spillable);
+        if (d == MemoryBudget.Decision.REFUSE) {
+            skip(rem);
+            throw new K4Exception("Result not loaded: it needs about " + MemoryBudget.format(estimate) + " but only " + MemoryBudget.format(MemoryBudget.available()) + " is available");
+        }
+        if (d == MemoryBudget.Decision.SPILL) {
+            long free = new File(System.getProperty("java.io.tmpdir")).getUsableSpace();
+            if (free < size) {
+                skip(rem);
+                throw new K4Exception("Result not spilled: it needs " + MemoryBudget.format(size) + " on disk but only " + MemoryBudget.format(free) + " is free");
             }
-            if ((f & i) != 0) {
-                r = aa[0xff & (int) b[d++]];
-                dst[s++] = dst[r++];
-                dst[s++] = dst[r++];
-                n = 0xff & (int) b[d++];
-                for (int m = 0; m < n; m++) {
-                    dst[s + m] = dst[r + m];
+        }
+        return d == MemoryBudget.Decision.SPILL;
+    }
+
+    // copies the body to a temp file and maps it, the bytes of head already read go first
+    private ByteBuffer spill(ByteBuffer head) throws IOException {
+        File f = File.createTempFile("studio", ".kdb");
+        try (RandomAccessFile file = new RandomAccessFile(f, "rw")) {
+            MappedByteBuffer m = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, msgLength);
+            if (head != null)
+                m.put(head);
+            ByteBuffer t = ch != null ? m : ByteBuffer.allocate(1 << 16);
+            while (rem > 0) {
+                if (pm != null && pm.isCanceled())
+                    throw new IOException("Cancelled by user");
+                if (t != m) {
+                    t.clear();
+                    t.limit(Math.min(rem, t.capacity()));
                 }
-            } else {
-                dst[s++] = b[d++];
+                rem -= read(t);
+                if (t != m) {
+                    t.flip();
+                    m.put(t);
+                }
+                progress();
             }
-            while (p < s - 1) {
-                aa[(0xff & (int) dst[p]) ^ (0xff & (int) dst[p + 1])] = p++;
+            m.flip();
+            return m;
+        }
+        finally {
+            // the mapping outlives the file where the platform allows it
+            if (!f.delete())
+                f.deleteOnExit();
+        }
+    }
+
+    // inflates until n bytes past the decode position are available, reading compressed bytes as needed
+    private void inflate(int n) throws IOException {
+        if (bb.position() + n > zl)
+            throw new EOFException("Unexpected end of message");
+        int want = Math.min(zl, Math.max(bb.position() + n, zs + (1 << 16)));
+        byte[] dst = b, z = zb.array();
+        int s = zs, p = zp, f = zf, i = zi, d = zb.position(), e = zb.limit();
+        while (s < want) {
+            if (e - d < 3 && rem > 0) {
+                zb.position(d);
+                zb = fill(zb, Math.min(3, e - d + rem));
+                z = zb.array();
+                d = zb.position();
+                e = zb.limit();
             }
-            if ((f & i) != 0) {
-                p = s += n;
+            if (i == 0) {
+                f = 0xff & z[d++];
+                i = 1;
             }
-            i *= 2;
-            if (i == 256) {
-                i = 0;
+            if ((f & i) != 0) {
+                int r = aa[0xff & z[d++]], m = 2 + (0xff & z[d++]);
+                if (r + m <= s)
+                    System.arraycopy(dst, r, dst, s, m);
+                else
+                    for (int k = 0; k < m; k++)
+                        dst[s + k] = dst[r + k];
+                for (s += 2; p < s - 1; p++)
+                    aa[(0xff & dst[p]) ^ (0xff & dst[p + 1])] = p;
+                p = s += m - 2;
+            } else {
+                dst[s++] = z[d++];
+                for (; p < s - 1; p++)
+                    aa[(0xff & dst[p]) ^ (0xff & dst[p + 1])] = p;
             }
+            i = (i << 1) & 0xff;
         }
-        b = dst;
-        j = 8;
+        zb.position(d);
+        zs = s;
+        zp = p;
+        zf = f;
+        zi = i;
+        bb.limit(s);
+    }
+
+    private byte[] acquire(int n) {
+        return pool != null ? pool.acquire(n) : new byte[n];
     }
 
     public void k(K.KBase x) throws K4Exception,IOException {
-        w(1,x);
+        calls.add(submit(x));
     }
 }
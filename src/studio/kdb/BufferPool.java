@@ -0,0 +1,86 @@
+package studio.kdb;
+
+import java.util.ArrayDeque;
+
+/**
+ * Recycles byte arrays used to receive IPC messages. Arrays are handed out in power of two size
+ * classes and at most maxRetained bytes are kept between messages.
+ */
+public class BufferPool {
+    private static final int MIN_CLASS = 12; // 4 kB
+    private static final int MAX_CLASS = 30; // 1 GB
+
+    private final ArrayDeque<byte[]>[] free;
+    private final long maxRetained;
+    private long retained;
+    private long hits, misses;
+
+    @SuppressWarnings("unchecked")
+    public BufferPool(long maxRetained) {
+        this.maxRetained = maxRetained;
+        free = new ArrayDeque[MAX_CLASS + 1];
+        for (int i = MIN_CLASS; i <= MAX_CLASS; i++)
+            free[i] = new ArrayDeque<>();
+    }
+
+    private static int sizeClass(int n) {
+        return Math.max(MIN_CLASS, 32 - Integer.numberOfLeadingZeros(Math.max(n, 1) - 1));
+    }
+
+    // the returned array is at least n long, exactly n when its size class could never be retained
+    public byte[] acquire(int n) {
+        int k = sizeClass(n);
+        if (k > MAX_CLASS || 1L << k > maxRetained) {
+            synchronized (this) {
+                misses++;
+            }
+            return new byte[n];
+        }
+        synchronized (this) {
+            byte[] b = free[k].poll();
+            if (b != null) {
+                retained -= b.length;
+                hits++;
+                return b;
+            }
+            misses++;
+        }
+        return new byte[1 << k];
+    }
+
+    public void release(byte[] b) {
+        if (b == null)
+            return;
+        int k = sizeClass(b.length);
+        if (k > MAX_CLASS || b.length != 1 << k)
+            return;
+        synchronized (this) {
+            if (retained + b.length > maxRetained)
+                return;
+            retained += b.length;
+            free[k].push(b);
+        }
+    }
+
+    public synchronized void clear() {
+        for (int i = MIN_CLASS; i <= MAX_CLASS; i++)
+            free[i].clear();
+        retained = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getRetainedBytes() {
+        return retained;
+    }
+
+    public String toString() {
+        return "BufferPool[hits=" + getHits() + ", misses=" + getMisses() + ", retained=" + getRetainedBytes() + "]";
+    }
+}
@@ -0,0 +1,233 @@
+package studio.kdb;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Summary of a column from one pass over its primitive accessors, split across the fork join pool: a null
+ * bitmap, the rows holding the minimum and maximum, the sum and mean of numeric columns and a HyperLogLog
+ * estimate of the number of distinct values. Vectors cache it until they are modified.
+ */
+public class ColumnStats {
+    private static final int LONG = 0, DOUBLE = 1, SYMBOL = 2, OTHER = 3;
+    // HyperLogLog with 2^P registers, about 1.6% standard error
+    private static final int P = 12, M = 1 << P;
+    // rows per task, a multiple of 64 so tasks never share a word of the bitmap
+    private static final int LEAF = 1 << 16;
+
+    private final K.KBaseVector v;
+    private final int count, nullCount, minRow, maxRow;
+    private final long[] nulls;
+    private final boolean numeric;
+    private final double sum;
+    private final long distinct;
+
+    private ColumnStats(K.KBaseVector v, long[] nulls, Part p, boolean numeric) {
+        this.v = v;
+        this.nulls = nulls;
+        count = v.getLength();
+        nullCount = p.nulls;
+        minRow = p.min;
+        maxRow = p.max;
+        this.numeric = numeric;
+        sum = p.sum;
+        distinct = Math.min(estimate(p.registers), count - nullCount);
+    }
+
+    public static ColumnStats of(K.KBaseVector v) {
+        Class<?> klass = v.getVectorClass();
+        int kind = klass == K.KSymbolVector.class ? SYMBOL
+                   : klass == K.KDoubleVector.class || klass == K.KFloatVector.class || klass == K.KDatetimeVector.class ? DOUBLE
+                   : klass == K.KList.class || klass == K.KGuidVector.class ? OTHER : LONG;
+        boolean numeric = klass == K.KBooleanVector.class || klass == K.KByteVector.class || klass == K.KShortVector.class || klass == K.KIntVector.class
+                          || klass == K.KLongVector.class || klass == K.KFloatVector.class || klass == K.KDoubleVector.class;
+        long[] nulls = new long[v.getLength() + 63 >>> 6];
+        Part p = ForkJoinPool.commonPool().invoke(new Scan(v, kind, nulls, 0, v.getLength()));
+        return new ColumnStats(v, nulls, p, numeric);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getNullCount() {
+        return nullCount;
+    }
+
+    public boolean isNull(int row) {
+        return (nulls[row >>> 6] & 1L << row) != 0;
+    }
+
+    // the smallest and largest non null values, null when there are none or the type is unordered
+    public K.KBase getMin() {
+        return minRow < 0 ? null : v.at(minRow);
+    }
+
+    public K.KBase getMax() {
+        return maxRow < 0 ? null : v.at(maxRow);
+    }
+
+    public boolean isNumeric() {
+        return numeric;
+    }
+
+    // of the non null values, NaN for columns that are not numeric
+    public double getSum() {
+        return numeric ? sum : Double.NaN;
+    }
+
+    public double getMean() {
+        return numeric && count > nullCount ? sum / (count - nullCount) : Double.NaN;
+    }
+
+    // approximate number of distinct non null values
+    public long getDistinct() {
+        return distinct;
+    }
+
+    private static long estimate(byte[] registers) {
+        double s = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            s += 1.0 / (1L << r);
+            if (r == 0)
+                zeros++;
+        }
+        double e = 0.7213 / (1 + 1.079 / M) * M * M / s;
+        if (e <= 2.5 * M && zeros > 0)
+            e = M * Math.log((double) M / zeros);
+        return Math.round(e);
+    }
+
+    private static long mix(long h) {
+        h = (h ^ h >>> 33) * 0xff51afd7ed558ccdL;
+        h = (h ^ h >>> 33) * 0xc4ceb9fe1a85ec53L;
+        return h ^ h >>> 33;
+    }
+
+    // the totals of a range of rows
+    private static class Part {
+        int nulls, min = -1, max = -1;
+        double sum;
+        final byte[] registers = new byte[M];
+
+        void add(long hash) {
+            int i = (int) (hash >>> 64 - P);
+            byte r = (byte) Math.min(Long.numberOfLeadingZeros(hash << P) + 1, 64 - P + 1);
+            if (r > registers[i])
+                registers[i] = r;
+        }
+    }
+
+    private static class Scan extends RecursiveTask<Part> {
+        private final K.KBaseVector v;
+        private final int kind, from, to;
+        private final long[] nulls;
+
+        Scan(K.KBaseVector v, int kind, long[] nulls, int from, int to) {
+            this.v = v;
+            this.kind = kind;
+            this.nulls = nulls;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected Part compute() {
+            if (to - from > LEAF) {
+                int mid = from + Math.max(1, (to - from) / 2 / LEAF) * LEAF;
+                Scan right = new Scan(v, kind, nulls, mid, to);
+                right.fork();
+                Part a = new Scan(v, kind, nulls, from, mid).compute(), b = right.join();
+                a.nulls += b.nulls;
+                a.sum += b.sum;
+                if (b.min >= 0 && (a.min < 0 || less(b.min, a.min)))
+                    a.min = b.min;
+                if (b.max >= 0 && (a.max < 0 || less(a.max, b.max)))
+                    a.max = b.max;
+                for (int i = 0; i < M; i++)
+                    a.registers[i] = (byte) Math.max(a.registers[i], b.registers[i]);
+                return a;
+            }
+            Part p = new Part();
+            String least = null, most = null;
+            // an encoded column compares its ranks rather than the strings they stand for
+            K.KSymbolVector sv = v instanceof K.KSymbolVector ? (K.KSymbolVector) v : null;
+            String[] dict = sv == null ? null : sv.dictionary();
+            int[] codes = dict == null ? null : sv.ranks();
+            for (int i = from; i < to; i++) {
+                if (v.isNull(i)) {
+                    nulls[i >>> 6] |= 1L << i;
+                    p.nulls++;
+                    continue;
+                }
+                switch (kind) {
+                    case LONG: {
+                        long x = v.getLong(i);
+                        p.sum += x;
+                        p.add(mix(x));
+                        break;
+                    }
+                    case DOUBLE: {
+                        double x = v.getDouble(i);
+                        p.sum += x;
+                        // by sort key, so -0 and 0 are one value and so are all NaNs
+                        p.add(mix(Sorter.doubleKey(x)));
+                        break;
+                    }
+                    case SYMBOL: {
+                        if (codes != null) {
+                            int c = codes[i];
+                            p.add(mix(dict[c].hashCode()));
+                            if (p.min < 0 || c < codes[p.min])
+                                p.min = i;
+                            if (p.max < 0 || c > codes[p.max])
+                                p.max = i;
+                            continue;
+                        }
+                        String x = symbol(i);
+                        p.add(mix(x.hashCode()));
+                        if (least == null || x.compareTo(least) < 0) {
+                            least = x;
+                            p.min = i;
+                        }
+                        if (most == null || x.compareTo(most) > 0) {
+                            most = x;
+                            p.max = i;
+                        }
+                        continue;
+                    }
+                    default:
+                        p.add(mix(v.at(i).toString(false).hashCode()));
+                }
+                if (kind != OTHER) {
+                    if (p.min < 0 || less(i, p.min))
+                        p.min = i;
+                    if (p.max < 0 || less(p.max, i))
+                        p.max = i;
+                }
+            }
+            return p;
+        }
+
+        private boolean less(int i, int j) {
+            switch (kind) {
+                case LONG:
+                    return v.getLong(i) < v.getLong(j);
+                case DOUBLE:
+                    return v.getDouble(i) < v.getDouble(j);
+                default:
+                    return symbol(i).compareTo(symbol(j)) < 0;
+            }
+        }
+
+        // the symbol at row i, read from the plain vector holding it so no KSymbol is boxed
+        private String symbol(int i) {
+            K.KBaseVector p = v;
+            if (v instanceof K.KChunkedVector) {
+                p = ((K.KChunkedVector) v).chunk(i);
+                i = ((K.KChunkedVector) v).offset(i);
+            }
+            return p instanceof K.KSymbolVector ? ((K.KSymbolVector) p).get(i) : ((K.KSymbol) p.at(i)).s;
+        }
+    }
+}
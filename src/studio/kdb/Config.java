@@ -73,9 +73,11 @@ public class Config {
     }
 
     public synchronized NumberFormat getNumberFormat() {
-        String key = p.getProperty("DecimalFormat", "#.#######");
+        return new DecimalFormat(getDecimalFormat());
+    }
 
-        return new DecimalFormat(key);
+    public String getDecimalFormat() {
+        return p.getProperty("DecimalFormat", "#.#######");
     }
 
     public static Config getInstance() {
@@ -270,6 +272,81 @@ public class Config {
         save();
     }
 
+    public boolean isStreamingDecode() {
+        return Boolean.parseBoolean(p.getProperty("streamingDecode", "true"));
+    }
+
+    public void setStreamingDecode(boolean value) {
+        p.setProperty("streamingDecode", "" + value);
+        save();
+    }
+
+    public boolean isNioTransport() {
+        return Boolean.parseBoolean(p.getProperty("nioTransport", "true"));
+    }
+
+    public void setNioTransport(boolean value) {
+        p.setProperty("nioTransport", "" + value);
+        save();
+    }
+
+    // large messages are read whole and their tables decoded a column per core, instead of while they arrive
+    public boolean isParallelDecode() {
+        return Boolean.parseBoolean(p.getProperty("parallelDecode", "false"));
+    }
+
+    public void setParallelDecode(boolean value) {
+        p.setProperty("parallelDecode", "" + value);
+        save();
+    }
+
+    // outgoing messages larger than this many bytes are compressed, -1 turns compression off
+    public int getCompressionThreshold() {
+        return Integer.parseInt(p.getProperty("compressionThreshold", "1048576"));
+    }
+
+    public void setCompressionThreshold(int value) {
+        p.setProperty("compressionThreshold", "" + value);
+        save();
+    }
+
+    public int getSubscriptionQueueSize() {
+        return Integer.parseInt(p.getProperty("subscriptionQueueSize", "1024"));
+    }
+
+    public void setSubscriptionQueueSize(int value) {
+        p.setProperty("subscriptionQueueSize", "" + value);
+        save();
+    }
+
+    public Subscription.Policy getSubscriptionPolicy() {
+        return Subscription.Policy.valueOf(p.getProperty("subscriptionPolicy", Subscription.Policy.COALESCE.name()));
+    }
+
+    public void setSubscriptionPolicy(Subscription.Policy value) {
+        p.setProperty("subscriptionPolicy", value.name());
+        save();
+    }
+
+    public int getLiveTableCapacity() {
+        return Integer.parseInt(p.getProperty("liveTableCapacity", "100000"));
+    }
+
+    public void setLiveTableCapacity(int value) {
+        p.setProperty("liveTableCapacity", "" + value);
+        save();
+    }
+
+    // share of the free heap a single result may take before the user is asked
+    public int getMemoryBudgetPercent() {
+        return Integer.parseInt(p.getProperty("memoryBudgetPercent", "80"));
+    }
+
+    public void setMemoryBudgetPercent(int value) {
+        p.setProperty("memoryBudgetPercent", "" + value);
+        save();
+    }
+
     public void setServerListBounds(Rectangle rectangle) {
         p.setProperty("serverList.x", "" + (int)rectangle.getX());
         p.setProperty("serverList.y", "" + (int)rectangle.getY());
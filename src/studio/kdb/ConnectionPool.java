@@ -4,6 +4,7 @@ import studio.core.AuthenticationManager;
 import studio.core.Credentials;
 import studio.core.IAuthenticationMechanism;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.io.IOException;
 import kx.c.K4Exception;
 
@@ -11,6 +12,9 @@ public class ConnectionPool {
     private final static ConnectionPool instance = new ConnectionPool();
     private final Map<Server,List<kx.c>> freeMap = new HashMap<>();
     private final Map<Server,List<kx.c>> busyMap = new HashMap<>();
+    private final Map<Server,kx.c> sharedMap = new HashMap<>();
+    // receive buffers shared by all connections, at most 64 MB kept idle
+    private final BufferPool bufferPool = new BufferPool(64L << 20);
 
     public static ConnectionPool getInstance() {
         return instance;
@@ -18,6 +22,10 @@ public class ConnectionPool {
 
     private ConnectionPool() {}
 
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
     public synchronized void purge(Server s) {
         List<kx.c> list = freeMap.computeIfAbsent(s, k -> new LinkedList<>());
         for (kx.c c: list) {
@@ -25,6 +33,51 @@ public class ConnectionPool {
         }
         list.clear();
         busyMap.put(s,new LinkedList<>());
+        kx.c c = sharedMap.remove(s);
+        if (c != null)
+            c.close();
+    }
+
+    // short lookups such as completion and keyword reloads are pipelined over one connection per server
+    public CompletableFuture<K.KBase> submit(Server s, K.KBase x) throws IOException, K4Exception {
+        kx.c c;
+        synchronized (this) {
+            c = sharedMap.get(s);
+            if (c == null) {
+                c = newConnection(s);
+                if (c == null)
+                    throw new IOException("Failed to initialize connection to " + s.getConnectionString(true));
+                sharedMap.put(s, c);
+            }
+        }
+        synchronized (c) {
+            checkConnected(c);
+        }
+        return c.submit(x);
+    }
+
+    // a connection outside the pool, for uses such as subscriptions that keep it to themselves
+    public kx.c newConnection(Server s) {
+        try {
+            Class<?> clazz = AuthenticationManager.getInstance().lookup(s.getAuthenticationMechanism());
+            IAuthenticationMechanism authenticationMechanism = (IAuthenticationMechanism) clazz.newInstance();
+
+            authenticationMechanism.setProperties(s.getAsProperties());
+            Credentials credentials = authenticationMechanism.getCredentials();
+            kx.c c;
+            if (credentials.getUsername().length() > 0) {
+                String p = credentials.getPassword();
+
+                c = new kx.c(s.getHost(), s.getPort(), credentials.getUsername() + ((p.length() == 0) ? "" : ":" + p), s.getUseTLS());
+            } else
+                c = new kx.c(s.getHost(), s.getPort(), "", s.getUseTLS());
+            c.setBufferPool(bufferPool);
+            return c;
+        } catch (InstantiationException | IllegalAccessException | IllegalArgumentException ex) {
+            System.err.println("Failed to initialize connection: " + ex);
+            ex.printStackTrace(System.err);
+            return null;
+        }
     }
 
     public synchronized kx.c leaseConnection(Server s) throws IOException, K4Exception {
@@ -43,23 +96,9 @@ public class ConnectionPool {
         list.removeAll(dead);
 
         if (c == null) {
-            try {
-                Class<?> clazz = AuthenticationManager.getInstance().lookup(s.getAuthenticationMechanism());
-                IAuthenticationMechanism authenticationMechanism = (IAuthenticationMechanism) clazz.newInstance();
-
-                authenticationMechanism.setProperties(s.getAsProperties());
-                Credentials credentials = authenticationMechanism.getCredentials();
-                if (credentials.getUsername().length() > 0) {
-                    String p = credentials.getPassword();
-
-                    c = new kx.c(s.getHost(), s.getPort(), credentials.getUsername() + ((p.length() == 0) ? "" : ":" + p), s.getUseTLS());
-                } else
-                    c = new kx.c(s.getHost(), s.getPort(), "", s.getUseTLS());
-            } catch (InstantiationException | IllegalAccessException | IllegalArgumentException ex) {
-                System.err.println("Failed to initialize connection: " + ex);
-                ex.printStackTrace(System.err);
+            c = newConnection(s);
+            if (c == null)
                 return null;
-            }
         } else {
             list.remove(c);
         }
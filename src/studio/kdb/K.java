@@ -4,12 +4,10 @@ import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Array;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -17,13 +15,6 @@ import java.util.Map;
 import java.util.UUID;
 
 public class K {
-    private static SimpleDateFormat formatter = new SimpleDateFormat();
-    private static DecimalFormat nsFormatter = new DecimalFormat("000000000");
-
-    static {
-        formatter.setTimeZone(java.util.TimeZone.getTimeZone("GMT"));
-    }
-
     private static final String enlist = "enlist ";
     private static final String flip = "flip ";
 
@@ -46,11 +37,6 @@ public class K {
         write(o, (int) j);
     }
 
-    private static synchronized String sd(String s, java.util.Date x) {
-        formatter.applyPattern(s);
-        return formatter.format(x);
-    }
-
     public abstract static class KBase {
         public abstract String getDataType();
 
@@ -686,27 +672,32 @@ public class K {
             return Float.isNaN(f);
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0ne";
+                return x.append("0ne");
             else if (f == Float.POSITIVE_INFINITY)
-                return "0we";
+                return x.append("0we");
             else if (f == Float.NEGATIVE_INFINITY)
-                return "-0we";
+                return x.append("-0we");
             else {
-                String s = Config.getInstance().getNumberFormat().format(f);
+                x.decimal(f);
                 if (showType) {
                     double epsilon = 1e-9;
                     double diff = f - Math.round(f);
                     if ((diff < epsilon) && (diff > -epsilon))
-                        s += "e";
+                        x.append('e');
                 }
-                return s;
+                return x;
             }
         }
 
+        public String toString(boolean showType) {
+            return format(showType).toString();
+        }
+
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
 
         public void serialise(OutputStream o) throws IOException {
@@ -736,27 +727,32 @@ public class K {
             return Double.isNaN(d);
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0n";
+                return x.append("0n");
             else if (d == Double.POSITIVE_INFINITY)
-                return "0w";
+                return x.append("0w");
             else if (d == Double.NEGATIVE_INFINITY)
-                return "-0w";
+                return x.append("-0w");
             else {
-                String s = Config.getInstance().getNumberFormat().format(d);
+                x.decimal(d);
                 if (showType) {
                     double epsilon = 1e-9;
                     double diff = d - Math.round(d);
                     if ((diff < epsilon) && (diff > -epsilon))
-                        s += "f";
+                        x.append('f');
                 }
-                return s;
+                return x;
             }
         }
 
+        public String toString(boolean showType) {
+            return format(showType).toString();
+        }
+
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
 
         public void serialise(OutputStream o) throws IOException {
@@ -782,19 +778,24 @@ public class K {
             return date == Integer.MIN_VALUE;
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0Nd";
+                return x.append("0Nd");
             else if (date == Integer.MAX_VALUE)
-                return "0Wd";
+                return x.append("0Wd");
             else if (date == -Integer.MAX_VALUE)
-                return "-0Wd";
+                return x.append("-0Wd");
             else
-                return sd("yyyy.MM.dd", new Date(86400000L * (date + 10957)));
+                return x.date(date);
+        }
+
+        public String toString(boolean showType) {
+            return format(showType).toString();
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
 
         public Date toDate() {
@@ -845,19 +846,24 @@ public class K {
             return time == Integer.MIN_VALUE;
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0Nt";
+                return x.append("0Nt");
             else if (time == Integer.MAX_VALUE)
-                return "0Wt";
+                return x.append("0Wt");
             else if (time == -Integer.MAX_VALUE)
-                return "-0Wt";
+                return x.append("-0Wt");
             else
-                return sd("HH:mm:ss.SSS", new Time(time));
+                return x.time(time);
+        }
+
+        public String toString(boolean showType) {
+            return format(showType).toString();
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
 
         public Time toTime() {
@@ -881,19 +887,24 @@ public class K {
             return Double.isNaN(time);
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0nz";
+                return x.append("0nz");
             else if (time == Double.POSITIVE_INFINITY)
-                return "0wz";
+                return x.append("0wz");
             else if (time == Double.NEGATIVE_INFINITY)
-                return "-0wz";
+                return x.append("-0wz");
             else
-                return sd("yyyy.MM.dd HH:mm:ss.SSS", toTimestamp());
+                return x.datetime(time);
+        }
+
+        public String toString(boolean showType) {
+            return format(showType).toString();
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
 
         public Timestamp toTimestamp() {
@@ -918,21 +929,24 @@ public class K {
             return time == Long.MIN_VALUE;
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0Np";
+                return x.append("0Np");
             else if (time == Long.MAX_VALUE)
-                return "0Wp";
+                return x.append("0Wp");
             else if (time == -Long.MAX_VALUE)
-                return "-0Wp";
-            else {
-                Timestamp ts = toTimestamp();
-                return sd("yyyy.MM.dd HH:mm:ss.", ts) + nsFormatter.format(ts.getNanos());
-            }
+                return x.append("-0Wp");
+            else
+                return x.timestamp(time);
+        }
+
+        public String toString(boolean showType) {
+            return format(showType).toString();
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
 
         public Timestamp toTimestamp() {
@@ -961,19 +975,93 @@ public class K {
             y = Y;
         }
 
-        public void upsert(K.Dict upd) {
+        // lazily built over the key columns of a keyed table
+        private KeyIndex index;
+
+        // upserts the keyed table upd: rows with existing keys overwrite the values in place, the last
+        // one winning, and rows with new keys are appended. Returns false when the tables do not match.
+        public boolean upsert(K.Dict upd) {
             //if dict is not table
             if (!(x instanceof K.Flip) || !(y instanceof K.Flip))
-                return;
+                return false;
             //if upd is not table
             if (!(upd.x instanceof K.Flip) || !(upd.y instanceof K.Flip))
-                return;
+                return false;
             Flip cx = (K.Flip) x;
             Flip cy = (K.Flip) y;
             Flip updx = (K.Flip) upd.x;
             Flip updy = (K.Flip) upd.y;
-            cx.append(updx);
-            cy.append(updy);
+            KBaseVector[] keys = KeyIndex.columns(updx), values = KeyIndex.columns(updy);
+            KBaseVector[] target = KeyIndex.columns(cy);
+            if (values.length != target.length)
+                return false;
+            for (int i = 0; i < values.length; i++)
+                if (values[i].getVectorClass() != target[i].getVectorClass())
+                    return false;
+            if (index == null)
+                index = new KeyIndex(cx);
+            else
+                index.update();
+            if (!index.accepts(keys))
+                return false;
+            int n = keys.length == 0 ? 0 : keys[0].getLength();
+            int[] dest = new int[n];
+            int found = 0;
+            for (int r = 0; r < n; r++)
+                if ((dest[r] = index.find(keys, r)) >= 0)
+                    found++;
+            // rows with new keys go to the end in order of their first occurrence in upd
+            int[] rows = new int[n - found];
+            int added = 0, length = index.size();
+            if (found < n) {
+                KeyIndex local = new KeyIndex(updx);
+                for (int r = 0; r < n; r++)
+                    if (dest[r] < 0) {
+                        int first = local.find(keys, r);
+                        if (first == r) {
+                            rows[added] = r;
+                            dest[r] = length + added++;
+                        } else
+                            dest[r] = dest[first];
+                    }
+            }
+            if (added == n) {
+                cx.append(updx);
+                cy.append(updy);
+                index.update();
+                return true;
+            }
+            for (int i = 0; i < values.length; i++)
+                values[i] = KBaseVector.plain(values[i]);
+            if (added > 0) {
+                cx.append(select(updx, rows, added));
+                cy.append(select(updy, rows, added));
+                index.update();
+            } else
+                cy.materialize();
+            target = KeyIndex.columns(cy);
+            for (int r = 0, a = 0; r < n; r++) {
+                if (a < added && rows[a] == r) {
+                    a++;
+                    continue;
+                }
+                for (int i = 0; i < target.length; i++)
+                    target[i].set(dest[r], values[i], r);
+            }
+            return true;
+        }
+
+        private static Flip select(Flip f, int[] rows, int n) {
+            KBaseVector[] c = KeyIndex.columns(f);
+            KList y = new KList(c.length);
+            for (int i = 0; i < c.length; i++) {
+                KBaseVector from = KBaseVector.plain(c[i]);
+                KBaseVector v = KBaseVector.newInstance(c[i].getVectorClass(), n);
+                for (int k = 0; k < n; k++)
+                    v.set(k, from, rows[k]);
+                ((KBase[]) y.getArray())[i] = v;
+            }
+            return new Flip(new Dict(f.x, y));
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1015,9 +1103,23 @@ public class K {
             y.toString(w, showType);
         }
 
+        // paged columns are decoded onto the heap before they are written to
+        void materialize() {
+            if (y instanceof KList)
+                for (int i = 0; i < y.getLength(); i++)
+                    if (y.at(i) instanceof KPagedVector)
+                        ((KBase[]) y.getArray())[i] = ((KPagedVector) y.at(i)).flatten();
+        }
+
+        // columns become chunked on the first append so later appends copy only the new rows
         public void append(Flip nf) {
-            for (int i = 0; i < y.getLength(); i++)
-                ((KBaseVector) y.at(i)).append((KBaseVector) nf.y.at(i));
+            materialize();
+            for (int i = 0; i < y.getLength(); i++) {
+                KBaseVector c = (KBaseVector) y.at(i);
+                if (!(c instanceof KChunkedVector) && y instanceof KList)
+                    ((KBase[]) y.getArray())[i] = c = new KChunkedVector(c);
+                c.append((KBaseVector) nf.y.at(i));
+            }
         }
     }
 
@@ -1037,22 +1139,26 @@ public class K {
             return i == Integer.MIN_VALUE;
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0Nm";
+                return x.append("0Nm");
             else if (i == Integer.MAX_VALUE)
-                return "0Wm";
+                return x.append("0Wm");
             else if (i == -Integer.MAX_VALUE)
-                return "-0Wm";
+                return x.append("-0Wm");
             else {
-                int m = i + 24000, y = m / 12;
-                String s = i2(y / 100) + i2(y % 100) + "." + i2(1 + m % 12);
+                x.month(i);
                 if (showType)
-                    s += "m";
-                return s;
+                    x.append('m');
+                return x;
             }
         }
 
+        public String toString(boolean showType) {
+            return format(showType).toString();
+        }
+
         public Date toDate() {
             int m = i + 24000, y = m / 12;
             Calendar cal = Calendar.getInstance();
@@ -1061,7 +1167,7 @@ public class K {
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
     }
 
@@ -1081,19 +1187,24 @@ public class K {
             return i == Integer.MIN_VALUE;
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0Nu";
+                return x.append("0Nu");
             else if (i == Integer.MAX_VALUE)
-                return "0Wu";
+                return x.append("0Wu");
             else if (i == -Integer.MAX_VALUE)
-                return "-0Wu";
+                return x.append("-0Wu");
             else
-                return i2(i / 60) + ":" + i2(i % 60);
+                return x.minute(i);
+        }
+
+        public String toString(boolean showType) {
+            return format(showType).toString();
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
 
         public Date toDate() {
@@ -1120,19 +1231,24 @@ public class K {
             return i == Integer.MIN_VALUE;
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0Nv";
+                return x.append("0Nv");
             else if (i == Integer.MAX_VALUE)
-                return "0Wv";
+                return x.append("0Wv");
             else if (i == -Integer.MAX_VALUE)
-                return "-0Wv";
+                return x.append("-0Wv");
             else
-                return new Minute(i / 60).toString() + ':' + i2(i % 60);
+                return x.second(i);
+        }
+
+        public String toString(boolean showType) {
+            return format(showType).toString();
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
 
         public Date toDate() {
@@ -1160,32 +1276,24 @@ public class K {
             return j == Long.MIN_VALUE;
         }
 
-        public String toString(boolean showType) {
+        private KFormat format(boolean showType) {
+            KFormat x = KFormat.get();
             if (isNull())
-                return "0Nn";
+                return x.append("0Nn");
             else if (j == Long.MAX_VALUE)
-                return "0Wn";
+                return x.append("0Wn");
             else if (j == -Long.MAX_VALUE)
-                return "-0Wn";
-            else {
-                String s = "";
-                long jj = j;
-                if (jj < 0) {
-                    jj = -jj;
-                    s = "-";
-                }
-                int d = ((int) (jj / 86400000000000L));
-                if (d != 0)
-                    s += d + "D";
-                return s + i2((int) ((jj % 86400000000000L) / 3600000000000L)) +
-                        ":" + i2((int) ((jj % 3600000000000L) / 60000000000L)) +
-                        ":" + i2((int) ((jj % 60000000000L) / 1000000000L)) +
-                        "." + nsFormatter.format((int) (jj % 1000000000L));
-            }
+                return x.append("-0Wn");
+            else
+                return x.timespan(j);
+        }
+
+        public String toString(boolean showType) {
+            return format(showType).toString();
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
-            w.write(toString(showType));
+            format(showType).writeTo(w);
         }
 
         public Time toTime() {
@@ -1193,15 +1301,14 @@ public class K {
         }
     }
 
-    static java.text.DecimalFormat i2Formatter = new java.text.DecimalFormat("00");
-
-    static String i2(int i) {
-        return i2Formatter.format(i);
-    }
-
     public static abstract class KBaseVector extends KBase {
         protected Object array;
         private int length;
+        private volatile ColumnStats stats;
+        private volatile int[] up, down;
+        // the copy plain makes of a chunked or paged vector, and the modifications made to the vector
+        private volatile Flat flat;
+        private volatile int modCount;
 
         protected KBaseVector(Class klass, int length) {
             //array=Array.newInstance(klass, calcCapacity(length));
@@ -1211,10 +1318,111 @@ public class K {
 
         public abstract KBase at(int i);
 
+        // element i as a primitive, without boxing it into a K atom
+        public long getLong(int i) {
+            throw new UnsupportedOperationException(getDataType() + " has no numeric value");
+        }
+
+        public int getInt(int i) {
+            return (int) getLong(i);
+        }
+
+        public double getDouble(int i) {
+            return getLong(i);
+        }
+
+        public boolean isNull(int i) {
+            return at(i).isNull();
+        }
+
+        public Cursor cursor() {
+            return new Cursor(this);
+        }
+
+        // the vector type elements are read as, callers dispatching on a column's type use this rather than getClass
+        public Class<? extends KBaseVector> getVectorClass() {
+            return getClass();
+        }
+
+        // overwrites element i with element j of x, a vector of the same type
+        public void set(int i, KBaseVector x, int j) {
+            System.arraycopy(x.getArray(), j, getArray(), i, 1);
+            modified();
+        }
+
+        // v itself, or a copy of its elements when it is chunked or paged. The copy is shared until v is modified
+        // or the collector needs the memory, so it must not be written to
+        static KBaseVector plain(KBaseVector v) {
+            if (!(v instanceof KChunkedVector || v instanceof KPagedVector))
+                return v;
+            int n = v.modCount;
+            Flat f = v.flat;
+            KBaseVector p = f == null || f.modCount != n ? null : f.get();
+            if (p == null) {
+                p = v instanceof KChunkedVector ? ((KChunkedVector) v).flatten() : ((KPagedVector) v).flatten();
+                v.flat = new Flat(p, n);
+            }
+            return p;
+        }
+
+        private static final class Flat extends SoftReference<KBaseVector> {
+            final int modCount;
+
+            Flat(KBaseVector v, int modCount) {
+                super(v);
+                this.modCount = modCount;
+            }
+        }
+
+        // computed on first use, until the vector is modified
+        public ColumnStats getStats() {
+            ColumnStats s = stats;
+            if (s == null)
+                stats = s = ColumnStats.of(this);
+            return s;
+        }
+
+        // the statistics if they have been computed, without computing them
+        ColumnStats cachedStats() {
+            return stats;
+        }
+
+        // the stable ascending or descending grade, computed on first use and shared until the vector is
+        // modified, so it must not be written to
+        public int[] getGrade(boolean ascending) {
+            int[] g = ascending ? up : down;
+            if (g == null)
+                if (ascending)
+                    up = g = gradeUp();
+                else
+                    down = g = Sorter.gradeDown(this, getGrade(true));
+            return g;
+        }
+
+        protected void modified() {
+            stats = null;
+            up = down = null;
+            flat = null;
+            modCount++;
+        }
+
+        public static KBaseVector newInstance(Class<?> klass, int length) {
+            try {
+                return (KBaseVector) klass.getConstructor(int.class).newInstance(length);
+            }
+            catch (ReflectiveOperationException ex) {
+                throw new IllegalArgumentException("Unsupported vector type " + klass.getName(), ex);
+            }
+        }
+
         public int getLength() {
             return length;
         }
 
+        protected void setLength(int length) {
+            this.length = length;
+        }
+
         public Object getArray() {
             return array;
         }
@@ -1223,8 +1431,9 @@ public class K {
             return Sorter.gradeUp(getArray(), getLength());
         }
 
+        // a copy of the stable descending grade, equal rows keep their ascending order
         public int[] gradeDown() {
-            return Sorter.gradeDown(getArray(), getLength());
+            return getGrade(false).clone();
         }
 
         protected int calcCapacity(int length) {
@@ -1240,6 +1449,308 @@ public class K {
             }
             System.arraycopy(x.getArray(), 0, getArray(), getLength(), x.getLength());
             length += x.getLength();
+            modified();
+        }
+    }
+
+    // reads the elements of a vector through an optional row index, one instance is reused across rows
+    public static class Cursor {
+        private final KBaseVector v;
+        private final int[] index;
+        private int i;
+
+        public Cursor(KBaseVector v) {
+            this(v, null);
+        }
+
+        public Cursor(KBaseVector v, int[] index) {
+            this.v = v;
+            this.index = index;
+        }
+
+        public Cursor seek(int row) {
+            i = index == null ? row : index[row];
+            return this;
+        }
+
+        public KBaseVector getVector() {
+            return v;
+        }
+
+        public long getLong() {
+            return v.getLong(i);
+        }
+
+        public int getInt() {
+            return v.getInt(i);
+        }
+
+        public double getDouble() {
+            return v.getDouble(i);
+        }
+
+        public boolean isNull() {
+            return v.isNull(i);
+        }
+
+        public KBase get() {
+            return v.at(i);
+        }
+    }
+
+    /**
+     * An appendable column: the vector it was created from followed by fixed size chunks of the same type.
+     * Appending copies only the new elements, and element i is found by its chunk index in constant time.
+     */
+    public static class KChunkedVector extends KBaseVector {
+        public static final int SHIFT = 16, CHUNK = 1 << SHIFT;
+
+        private final KBaseVector head;
+        private KBaseVector[] chunks = new KBaseVector[4];
+        private int count, used;
+
+        public KChunkedVector(KBaseVector head) {
+            super(Object.class, 0);
+            array = null;
+            type = head.type;
+            this.head = head;
+            setLength(head.getLength());
+        }
+
+        public String getDataType() {
+            return head.getDataType();
+        }
+
+        public Class<? extends KBaseVector> getVectorClass() {
+            return head.getClass();
+        }
+
+        KBaseVector chunk(int i) {
+            return i < head.getLength() ? head : chunks[i - head.getLength() >>> SHIFT];
+        }
+
+        int offset(int i) {
+            return i < head.getLength() ? i : i - head.getLength() & CHUNK - 1;
+        }
+
+        public KBase at(int i) {
+            return chunk(i).at(offset(i));
+        }
+
+        public long getLong(int i) {
+            return chunk(i).getLong(offset(i));
+        }
+
+        public int getInt(int i) {
+            return chunk(i).getInt(offset(i));
+        }
+
+        public double getDouble(int i) {
+            return chunk(i).getDouble(offset(i));
+        }
+
+        public boolean isNull(int i) {
+            return chunk(i).isNull(offset(i));
+        }
+
+        public void set(int i, KBaseVector x, int j) {
+            chunk(i).set(offset(i), x, j);
+            modified();
+        }
+
+        public void append(KBaseVector x) {
+            if (x instanceof KChunkedVector) {
+                KChunkedVector c = (KChunkedVector) x;
+                append(c.head, 0, c.head.getLength());
+                for (int i = 0; i < c.count; i++)
+                    append(c.chunks[i], 0, i == c.count - 1 ? c.used : CHUNK);
+            } else
+                append(x, 0, x.getLength());
+        }
+
+        private void append(KBaseVector x, int o, int n) {
+            if (x.getClass() != head.getClass() && !(head instanceof KList))
+                throw new IllegalArgumentException("Cannot append " + x.getDataType() + " to " + getDataType());
+            Object from = x.getClass() == head.getClass() ? x.getArray() : null;
+            while (n > 0) {
+                if (count == 0 || used == CHUNK) {
+                    if (count == chunks.length)
+                        chunks = java.util.Arrays.copyOf(chunks, 2 * count);
+                    chunks[count++] = newInstance(head.getClass(), CHUNK);
+                    used = 0;
+                }
+                int k = Math.min(n, CHUNK - used);
+                Object to = chunks[count - 1].getArray();
+                if (from != null)
+                    System.arraycopy(from, o, to, used, k);
+                else
+                    for (int i = 0; i < k; i++)
+                        ((KBase[]) to)[used + i] = x.at(o + i);
+                used += k;
+                o += k;
+                n -= k;
+                setLength(getLength() + k);
+            }
+            modified();
+        }
+
+        // a plain vector holding a copy of the elements
+        public KBaseVector flatten() {
+            KBaseVector v = newInstance(head.getClass(), getLength());
+            Object to = v.getArray();
+            System.arraycopy(head.getArray(), 0, to, 0, head.getLength());
+            for (int i = 0, at = head.getLength(); i < count; i++, at += CHUNK)
+                System.arraycopy(chunks[i].getArray(), 0, to, at, i == count - 1 ? used : CHUNK);
+            return v;
+        }
+
+        // a copy, writing to it does not change the column
+        public Object getArray() {
+            return flatten().getArray();
+        }
+
+        public int[] gradeUp() {
+            return flatten().gradeUp();
+        }
+
+        public void toString(Writer w, boolean showType) throws IOException {
+            flatten().toString(w, showType);
+        }
+    }
+
+    /**
+     * A read only vector decoded a page at a time when first read. Decoded pages are softly referenced, so the
+     * collector drops them again when the heap runs short.
+     */
+    public static abstract class KPagedVector extends KBaseVector {
+        // decodes the n elements from first on into a plain vector
+        public interface Pager {
+            KBaseVector page(int first, int n);
+        }
+
+        private final Pager pager;
+        private final int shift;
+        private final KBaseVector empty;
+        private final SoftReference<KBaseVector>[] pages;
+
+        @SuppressWarnings("unchecked")
+        protected KPagedVector(Pager pager, int length, int shift) {
+            super(Object.class, 0);
+            array = null;
+            this.pager = pager;
+            this.shift = shift;
+            empty = pager.page(0, 0);
+            type = empty.type;
+            setLength(length);
+            pages = new SoftReference[length + (1 << shift) - 1 >>> shift];
+        }
+
+        public String getDataType() {
+            return empty.getDataType();
+        }
+
+        public Class<? extends KBaseVector> getVectorClass() {
+            return empty.getClass();
+        }
+
+        public int getPageCount() {
+            return pages.length;
+        }
+
+        // elements held by the pages decoded and not yet collected
+        public int getResidentLength() {
+            int n = 0;
+            for (int k = 0; k < pages.length; k++) {
+                KBaseVector p = pages[k] == null ? null : pages[k].get();
+                if (p != null)
+                    n += p.getLength();
+            }
+            return n;
+        }
+
+        private KBaseVector page(int i) {
+            int k = i >>> shift;
+            KBaseVector p = pages[k] == null ? null : pages[k].get();
+            if (p == null) {
+                p = pager.page(k << shift, Math.min(1 << shift, getLength() - (k << shift)));
+                pages[k] = new SoftReference<>(p);
+            }
+            return p;
+        }
+
+        private int offset(int i) {
+            return i & (1 << shift) - 1;
+        }
+
+        public KBase at(int i) {
+            return page(i).at(offset(i));
+        }
+
+        public long getLong(int i) {
+            return page(i).getLong(offset(i));
+        }
+
+        public int getInt(int i) {
+            return page(i).getInt(offset(i));
+        }
+
+        public double getDouble(int i) {
+            return page(i).getDouble(offset(i));
+        }
+
+        public boolean isNull(int i) {
+            return page(i).isNull(offset(i));
+        }
+
+        public void set(int i, KBaseVector x, int j) {
+            throw new UnsupportedOperationException("Cannot modify a paged " + getDataType());
+        }
+
+        public void append(KBaseVector x) {
+            throw new UnsupportedOperationException("Cannot modify a paged " + getDataType());
+        }
+
+        // all the elements decoded onto the heap
+        public KBaseVector flatten() {
+            return pager.page(0, getLength());
+        }
+
+        public Object getArray() {
+            return flatten().getArray();
+        }
+
+        public int[] gradeUp() {
+            return flatten().gradeUp();
+        }
+
+        public void toString(Writer w, boolean showType) throws IOException {
+            flatten().toString(w, showType);
+        }
+    }
+
+    // a vector of a spilled message, its elements stay in the memory mapped file
+    public static class KMappedVector extends KPagedVector {
+        public static final int SHIFT = 16, PAGE = 1 << SHIFT;
+
+        public KMappedVector(Pager pager, int length) {
+            super(pager, length, SHIFT);
+        }
+    }
+
+    // a general list kept as the bytes it was sent as, elements are decoded when first read
+    public static class KLazyList extends KPagedVector {
+        public static final int SHIFT = 10, PAGE = 1 << SHIFT;
+
+        private final int bytes;
+
+        public KLazyList(Pager pager, int length, int bytes) {
+            super(pager, length, SHIFT);
+            this.bytes = bytes;
+        }
+
+        // the size of the encoded elements
+        public int getByteCount() {
+            return bytes;
         }
     }
 
@@ -1254,7 +1765,15 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KShort(Array.getShort(array, i));
+            return new KShort(((short[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return ((short[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((short[]) array)[i] == Short.MIN_VALUE;
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1296,7 +1815,19 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KInteger(Array.getInt(array, i));
+            return new KInteger(((int[]) array)[i]);
+        }
+
+        public int getInt(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public long getLong(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((int[]) array)[i] == Integer.MIN_VALUE;
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1337,7 +1868,12 @@ public class K {
         }
 
         public KBase at(int i) {
-            return (KBase) Array.get(array, i);
+            return ((KBase[]) array)[i];
+        }
+
+        public void set(int i, KBaseVector x, int j) {
+            ((KBase[]) array)[i] = x.at(j);
+            modified();
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1368,7 +1904,19 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KDouble(Array.getDouble(array, i));
+            return new KDouble(((double[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return (long) ((double[]) array)[i];
+        }
+
+        public double getDouble(int i) {
+            return ((double[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return Double.isNaN(((double[]) array)[i]);
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1381,7 +1929,6 @@ public class K {
                     w.write(enlist);
 
                 boolean printedP = false;
-                NumberFormat nf = Config.getInstance().getNumberFormat();
                 for (int i = 0; i < getLength(); i++) {
                     double d = Array.getDouble(array, i);
                     if (i > 0)
@@ -1400,7 +1947,7 @@ public class K {
                         double diff = d - Math.round(d);
                         if (!((diff < epsilon) && (diff > -epsilon)))
                             printedP = true;
-                        w.write(nf.format(d));
+                        KFormat.get().decimal(d).writeTo(w);
                     }
                 }
                 if (!printedP)
@@ -1420,7 +1967,19 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KFloat(Array.getFloat(array, i));
+            return new KFloat(((float[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return (long) ((float[]) array)[i];
+        }
+
+        public double getDouble(int i) {
+            return ((float[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return Float.isNaN(((float[]) array)[i]);
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1433,7 +1992,6 @@ public class K {
                     w.write(enlist);
 
                 boolean printedP = false;
-                NumberFormat nf = Config.getInstance().getNumberFormat();
                 for (int i = 0; i < getLength(); i++) {
                     float d = Array.getFloat(array, i);
                     if (i > 0)
@@ -1450,7 +2008,7 @@ public class K {
                     } else {
                         if (d != ((int) d))
                             printedP = true;
-                        w.write(nf.format(d));
+                        KFormat.get().decimal(d).writeTo(w);
                     }
                 }
                 if (!printedP)
@@ -1470,7 +2028,15 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KLong(Array.getLong(array, i));
+            return new KLong(((long[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return ((long[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((long[]) array)[i] == Long.MIN_VALUE;
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1512,7 +2078,19 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new Month(Array.getInt(array, i));
+            return new Month(((int[]) array)[i]);
+        }
+
+        public int getInt(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public long getLong(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((int[]) array)[i] == Integer.MIN_VALUE;
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1534,9 +2112,7 @@ public class K {
                     else if (v == -Integer.MAX_VALUE)
                         w.write("-0W");
                     else {
-                        int m = v + 24000, y = m / 12;
-                        String s = i2(y / 100) + i2(y % 100) + "." + i2(1 + m % 12);
-                        w.write(s);
+                        KFormat.get().month(v).writeTo(w);
                     }
                 }
                 if (showType)
@@ -1556,7 +2132,19 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KDate(Array.getInt(array, i));
+            return new KDate(((int[]) array)[i]);
+        }
+
+        public int getInt(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public long getLong(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((int[]) array)[i] == Integer.MIN_VALUE;
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1580,7 +2168,7 @@ public class K {
                         w.write("-0W");
                     else {
                         printD = false;
-                        w.write(sd("yyyy.MM.dd", new Date(86400000L * (v + 10957))));
+                        KFormat.get().date(v).writeTo(w);
                     }
                 }
                 if (printD)
@@ -1590,17 +2178,93 @@ public class K {
     }
 
     public static class KGuidVector extends KBaseVector {
+        // the high and low halves of each guid, array is null until a UUID[] is asked for.
+        // getArray clears msb before lsb and readers read them in the other order.
+        private volatile long[] msb, lsb;
+
         public String getDataType() {
             return "Guid Vector";
         }
 
         public KGuidVector(int length) {
-            super(UUID.class, length);
+            super(UUID.class, 0);
             type = 2;
+            array = null;
+            setLength(length);
+            lsb = new long[length];
+            msb = new long[length];
+        }
+
+        public long getMsb(int i) {
+            long[] m = msb;
+            return m == null ? ((UUID[]) array)[i].getMostSignificantBits() : m[i];
+        }
+
+        public long getLsb(int i) {
+            long[] l = lsb;
+            return l == null || msb == null ? ((UUID[]) array)[i].getLeastSignificantBits() : l[i];
+        }
+
+        // the halves to decode into, null once the vector holds UUIDs
+        public long[] getMsbArray() {
+            return msb;
+        }
+
+        public long[] getLsbArray() {
+            long[] l = lsb;
+            return msb == null ? null : l;
+        }
+
+        // callers may write to the array, so the UUIDs become the values once it is handed out
+        public Object getArray() {
+            long[] l = lsb, m = msb;
+            if (m != null && l != null) {
+                UUID[] a = new UUID[m.length];
+                for (int i = 0; i < m.length; i++)
+                    a[i] = new UUID(m[i], l[i]);
+                array = a;
+                msb = null;
+                lsb = null;
+            }
+            return array;
         }
 
         public KBase at(int i) {
-            return new KGuid((UUID) Array.get(array, i));
+            long x = getMsb(i), y = getLsb(i);
+            return new KGuid(x == 0 && y == 0 ? KGuid.nuuid : new UUID(x, y));
+        }
+
+        public boolean isNull(int i) {
+            return getMsb(i) == 0 && getLsb(i) == 0;
+        }
+
+        public boolean equals(int i, int j) {
+            return getMsb(i) == getMsb(j) && getLsb(i) == getLsb(j);
+        }
+
+        public void set(int i, KBaseVector x, int j) {
+            long[] l = lsb, m = msb;
+            if (m == null || l == null || !(x instanceof KGuidVector))
+                super.set(i, x, j);
+            else {
+                m[i] = ((KGuidVector) x).getMsb(j);
+                l[i] = ((KGuidVector) x).getLsb(j);
+                modified();
+            }
+        }
+
+        // guids order as unsigned 16 byte values
+        public int[] gradeUp() {
+            long[] y = lsb, x = msb;
+            if (x == null || y == null) {
+                x = new long[getLength()];
+                y = new long[getLength()];
+                for (int i = 0; i < x.length; i++) {
+                    x[i] = getMsb(i);
+                    y[i] = getLsb(i);
+                }
+            }
+            return Sorter.gradeUp(x, y, getLength());
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1614,7 +2278,7 @@ public class K {
                 for (int i = 0; i < getLength(); i++) {
                     if (i > 0)
                         w.write(" ");
-                    w.write(((UUID) Array.get(array, i)).toString());
+                    w.write(new UUID(getMsb(i), getLsb(i)).toString());
                 }
             }
         }
@@ -1631,7 +2295,19 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new Minute(Array.getInt(array, i));
+            return new Minute(((int[]) array)[i]);
+        }
+
+        public int getInt(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public long getLong(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((int[]) array)[i] == Integer.MIN_VALUE;
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1653,7 +2329,7 @@ public class K {
                     else if (v == -Integer.MAX_VALUE)
                         w.write("-0Wu");
                     else
-                        w.write(i2(v / 60) + ":" + i2(v % 60));
+                        KFormat.get().minute(v).writeTo(w);
                 }
             }
         }
@@ -1670,7 +2346,19 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KDatetime(Array.getDouble(array, i));
+            return new KDatetime(((double[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return (long) ((double[]) array)[i];
+        }
+
+        public double getDouble(int i) {
+            return ((double[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return Double.isNaN(((double[]) array)[i]);
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1696,7 +2384,7 @@ public class K {
                         w.write("-0w");
                     else {
                         printZ = false;
-                        w.write(sd("yyyy.MM.dd HH:mm:ss.SSS", new Timestamp(((long) (.5 + 8.64e7 * (d + 10957))))));
+                        KFormat.get().datetime(d).writeTo(w);
                     }
                 }
                 if (printZ)
@@ -1716,7 +2404,15 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KTimestamp(Array.getLong(array, i));
+            return new KTimestamp(((long[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return ((long[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((long[]) array)[i] == Long.MIN_VALUE;
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1730,7 +2426,7 @@ public class K {
                 for (int i = 0; i < getLength(); i++) {
                     if (i > 0)
                         w.write(" ");
-                    w.write(at(i).toString(false));
+                    at(i).toString(w, false);
                 }
             }
         }
@@ -1747,7 +2443,15 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KTimespan(Array.getLong(array, i));
+            return new KTimespan(((long[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return ((long[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((long[]) array)[i] == Long.MIN_VALUE;
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1761,7 +2465,7 @@ public class K {
                 for (int i = 0; i < getLength(); i++) {
                     if (i > 0)
                         w.write(" ");
-                    w.write(at(i).toString(false));
+                    at(i).toString(w, false);
                 }
             }
         }
@@ -1778,7 +2482,19 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new Second(Array.getInt(array, i));
+            return new Second(((int[]) array)[i]);
+        }
+
+        public int getInt(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public long getLong(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((int[]) array)[i] == Integer.MIN_VALUE;
         }
 
         public void serialise(OutputStream o) throws IOException {
@@ -1808,7 +2524,7 @@ public class K {
                     else if (v == -Integer.MAX_VALUE)
                         w.write("-0Wv");
                     else
-                        w.write(new Minute(v / 60).toString() + ':' + i2(v % 60));
+                        KFormat.get().second(v).writeTo(w);
                 }
             }
         }
@@ -1825,7 +2541,19 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KTime(Array.getInt(array, i));
+            return new KTime(((int[]) array)[i]);
+        }
+
+        public int getInt(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public long getLong(int i) {
+            return ((int[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((int[]) array)[i] == Integer.MIN_VALUE;
         }
 
         public void serialise(OutputStream o) throws IOException {
@@ -1855,7 +2583,7 @@ public class K {
                     else if (v == -Integer.MAX_VALUE)
                         w.write("-0Wt");
                     else
-                        w.write(sd("HH:mm:ss.SSS", new Time(v)));
+                        KFormat.get().time(v).writeTo(w);
                 }
             }
         }
@@ -1872,7 +2600,15 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KBoolean(Array.getBoolean(array, i));
+            return new KBoolean(((boolean[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return ((boolean[]) array)[i] ? 1 : 0;
+        }
+
+        public boolean isNull(int i) {
+            return false;
         }
 
         public void serialise(OutputStream o) throws IOException {
@@ -1908,7 +2644,15 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KByte(Array.getByte(array, i));
+            return new KByte(((byte[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return ((byte[]) array)[i] & 0xff;
+        }
+
+        public boolean isNull(int i) {
+            return false;
         }
 
         public void serialise(OutputStream o) throws IOException {
@@ -1941,13 +2685,148 @@ public class K {
             return "Symbol Vector";
         }
 
+        // codes are ranks in the sorted, distinct dict, published together so readers on other threads see a
+        // matching pair
+        private static final class Encoding {
+            final String[] dict;
+            final int[] codes;
+
+            Encoding(String[] dict, int[] codes) {
+                this.dict = dict;
+                this.codes = codes;
+            }
+        }
+
+        // when set the vector is dictionary encoded and array is null, getArray sets array before clearing it
+        private volatile Encoding encoding;
+
         public KSymbolVector(int length) {
             super(String.class, length);
             type = 11;
         }
 
+        private KSymbolVector(int[] codes, String[] dict) {
+            super(String.class, 0);
+            type = 11;
+            array = null;
+            setLength(codes.length);
+            encoding = new Encoding(dict, codes);
+        }
+
+        // a vector over s, dictionary encoded when at most half of its symbols are distinct
+        public static KSymbolVector of(String[] s) {
+            // symbols in first seen order, found through an open addressing table of their positions
+            String[] dict = new String[16];
+            int[] table = new int[64];
+            int mask = table.length - 1, k = 0;
+            int[] codes = new int[s.length];
+            for (int i = 0; i < s.length; i++) {
+                String x = s[i];
+                int slot = x.hashCode() * 0x9E3779B9 >>> 7 & mask, id;
+                for (; (id = table[slot]) != 0; slot = slot + 1 & mask) {
+                    String y = dict[id - 1];
+                    if (y == x || y.equals(x))
+                        break;
+                }
+                if (id == 0) {
+                    if (2 * k >= s.length) {
+                        KSymbolVector v = new KSymbolVector(0);
+                        v.array = s;
+                        v.setLength(s.length);
+                        return v;
+                    }
+                    if (k == dict.length)
+                        dict = java.util.Arrays.copyOf(dict, 2 * k);
+                    dict[k++] = x;
+                    id = k;
+                    if (4 * k > table.length) {
+                        table = new int[2 * table.length];
+                        mask = table.length - 1;
+                        for (int d = 1; d <= k; d++) {
+                            int at = dict[d - 1].hashCode() * 0x9E3779B9 >>> 7 & mask;
+                            while (table[at] != 0)
+                                at = at + 1 & mask;
+                            table[at] = d;
+                        }
+                    } else
+                        table[slot] = id;
+                }
+                codes[i] = id - 1;
+            }
+            String[] seen = dict;
+            Integer[] order = new Integer[k];
+            for (int i = 0; i < k; i++)
+                order[i] = i;
+            java.util.Arrays.sort(order, (x, y) -> seen[x].compareTo(seen[y]));
+            int[] rank = new int[k];
+            String[] sorted = new String[k];
+            for (int i = 0; i < k; i++) {
+                rank[order[i]] = i;
+                sorted[i] = seen[order[i]];
+            }
+            for (int i = 0; i < codes.length; i++)
+                codes[i] = rank[codes[i]];
+            return new KSymbolVector(codes, sorted);
+        }
+
+        public boolean isEncoded() {
+            return encoding != null;
+        }
+
+        public String get(int i) {
+            Encoding e = encoding;
+            return e == null ? ((String[]) array)[i] : e.dict[e.codes[i]];
+        }
+
+        // callers may write to the array, so the vector stops being encoded once it is handed out
+        public synchronized Object getArray() {
+            Encoding e = encoding;
+            if (e != null) {
+                String[] a = new String[e.codes.length];
+                for (int i = 0; i < a.length; i++)
+                    a[i] = e.dict[e.codes[i]];
+                array = a;
+                encoding = null;
+            }
+            return array;
+        }
+
+        // the codes when the vector is dictionary encoded, null otherwise
+        int[] ranks() {
+            Encoding e = encoding;
+            return e == null ? null : e.codes;
+        }
+
+        // the sorted distinct symbols the ranks index, null when the vector is not encoded
+        String[] dictionary() {
+            Encoding e = encoding;
+            return e == null ? null : e.dict;
+        }
+
+        // a stable counting sort on the ranks, linear in the length
+        public int[] gradeUp() {
+            Encoding e = encoding;
+            if (e == null)
+                return super.gradeUp();
+            String[] d = e.dict;
+            int[] c = e.codes;
+            int[] start = new int[d.length + 1];
+            for (int x : c)
+                start[x + 1]++;
+            for (int i = 1; i < start.length; i++)
+                start[i] += start[i - 1];
+            int[] permutation = new int[c.length];
+            for (int i = 0; i < c.length; i++)
+                permutation[start[c[i]]++] = i;
+            return permutation;
+        }
+
         public KBase at(int i) {
-            return new KSymbol((String) Array.get(array, i));
+            return new KSymbol(get(i));
+        }
+
+        public boolean isNull(int i) {
+            return get(i).length() == 0;
         }
 
         public void toString(Writer w, boolean showType) throws IOException {
@@ -1958,7 +2837,7 @@ public class K {
                 w.write(enlist);
 
             for (int i = 0; i < getLength(); i++)
-                w.write("`" + Array.get(array, i));
+                w.write("`" + get(i));
         }
     }
 
@@ -1986,7 +2865,15 @@ public class K {
         }
 
         public KBase at(int i) {
-            return new KCharacter(Array.getChar(array, i));
+            return new KCharacter(((char[]) array)[i]);
+        }
+
+        public long getLong(int i) {
+            return ((char[]) array)[i];
+        }
+
+        public boolean isNull(int i) {
+            return ((char[]) array)[i] == ' ';
         }
 
         public void serialise(OutputStream o) throws IOException {
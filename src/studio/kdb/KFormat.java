@@ -0,0 +1,250 @@
+package studio.kdb;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Arrays;
+
+/**
+ * Writes the text of K values into a reused char buffer. Temporal types are split into fields with integer
+ * arithmetic on days, milliseconds and nanoseconds, and doubles take a fast path that gives the same text as
+ * the configured DecimalFormat, falling back to it near rounding ties. Each thread has one instance, taken
+ * with get() and written out before the next get().
+ */
+public class KFormat {
+    private static final ThreadLocal<KFormat> local = ThreadLocal.withInitial(KFormat::new);
+    private static final long MS_DAY = 86400000L, NS_DAY = 86400000000000L;
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = 10 * POW10[i - 1];
+    }
+
+    private char[] buf = new char[64];
+    private int n;
+    // the decimal pattern the fields below were set up for
+    private String pattern;
+    private NumberFormat decimalFormat;
+    private boolean fast;
+    private int minFraction, maxFraction;
+    private char separator, minus;
+
+    public static KFormat get() {
+        KFormat f = local.get();
+        f.n = 0;
+        return f;
+    }
+
+    public int length() {
+        return n;
+    }
+
+    public void writeTo(Writer w) throws IOException {
+        w.write(buf, 0, n);
+    }
+
+    public String toString() {
+        return new String(buf, 0, n);
+    }
+
+    private void ensure(int k) {
+        if (n + k > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(2 * buf.length, n + k));
+    }
+
+    public KFormat append(char c) {
+        ensure(1);
+        buf[n++] = c;
+        return this;
+    }
+
+    public KFormat append(String s) {
+        ensure(s.length());
+        s.getChars(0, s.length(), buf, n);
+        n += s.length();
+        return this;
+    }
+
+    public KFormat append(long x) {
+        if (x == Long.MIN_VALUE)
+            return append(Long.toString(x));
+        if (x < 0) {
+            append('-');
+            x = -x;
+        }
+        int k = 1;
+        while (k < POW10.length && x >= POW10[k])
+            k++;
+        return pad(x, k);
+    }
+
+    // x >= 0 in at least width digits
+    private KFormat pad(long x, int width) {
+        int k = 1;
+        while (k < POW10.length && x >= POW10[k])
+            k++;
+        k = Math.max(k, width);
+        ensure(k);
+        for (int i = n + k - 1; i >= n; i--, x /= 10)
+            buf[i] = (char) ('0' + x % 10);
+        n += k;
+        return this;
+    }
+
+    // as DecimalFormat("00")
+    private KFormat i2(long x) {
+        if (x < 0) {
+            append('-');
+            x = -x;
+        }
+        return pad(x, 2);
+    }
+
+    // days since 1970.01.01 as yyyy.MM.dd in the proleptic Gregorian calendar, sep between the fields
+    private KFormat civil(long z, char sep) {
+        z += 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long d = doy - (153 * mp + 2) / 5 + 1;
+        long m = mp < 10 ? mp + 3 : mp - 9;
+        long y = yoe + era * 400 + (m <= 2 ? 1 : 0);
+        if (y < 0) {
+            append('-');
+            y = -y;
+        }
+        return pad(y, 4).append(sep).pad(m, 2).append(sep).pad(d, 2);
+    }
+
+    // milliseconds into a day as HH:mm:ss.SSS
+    private KFormat clock(long ms) {
+        return pad(ms / 3600000, 2).append(':').pad(ms / 60000 % 60, 2).append(':').pad(ms / 1000 % 60, 2).append('.').pad(ms % 1000, 3);
+    }
+
+    // days since 2000.01.01
+    public KFormat date(int d) {
+        return civil(d + 10957L, '.');
+    }
+
+    // as yyyy-MM-dd
+    public KFormat isoDate(int d) {
+        return civil(d + 10957L, '-');
+    }
+
+    // months since 2000.01
+    public KFormat month(int i) {
+        int m = i + 24000, y = m / 12;
+        return i2(y / 100).i2(y % 100).append('.').i2(1 + m % 12);
+    }
+
+    // as yyyy-MM
+    public KFormat isoMonth(int i) {
+        int m = i + 24000, y = m / 12;
+        return i2(y / 100).i2(y % 100).append('-').i2(1 + m % 12);
+    }
+
+    public KFormat minute(int i) {
+        return i2(i / 60).append(':').i2(i % 60);
+    }
+
+    public KFormat second(int i) {
+        return minute(i / 60).append(':').i2(i % 60);
+    }
+
+    // milliseconds, wrapped into a day
+    public KFormat time(int i) {
+        return clock(Math.floorMod((long) i, MS_DAY));
+    }
+
+    // days since 2000.01.01 with the time as a fraction, to the millisecond
+    public KFormat datetime(double x) {
+        long ms = (long) (.5 + 8.64e7 * (x + 10957));
+        return civil(Math.floorDiv(ms, MS_DAY), '.').append(' ').clock(Math.floorMod(ms, MS_DAY));
+    }
+
+    // nanoseconds since 2000.01.01
+    public KFormat timestamp(long x) {
+        long ns = Math.floorMod(x, NS_DAY);
+        civil(Math.floorDiv(x, NS_DAY) + 10957, '.').append(' ');
+        return pad(ns / 3600000000000L, 2).append(':').pad(ns / 60000000000L % 60, 2).append(':').pad(ns / 1000000000L % 60, 2).append('.').pad(ns % 1000000000L, 9);
+    }
+
+    // as yyyy-MM-ddTHH:mm:ss.SSS
+    public KFormat isoTimestamp(long x) {
+        return civil(Math.floorDiv(x, NS_DAY) + 10957, '-').append('T').clock(Math.floorMod(x, NS_DAY) / 1000000);
+    }
+
+    public KFormat timespan(long j) {
+        if (j < 0) {
+            append('-');
+            j = -j;
+        }
+        long d = j / NS_DAY;
+        if (d != 0)
+            append(d).append('D');
+        return i2(j % NS_DAY / 3600000000000L).append(':').i2(j % 3600000000000L / 60000000000L).append(':').i2(j % 60000000000L / 1000000000L).append('.').pad(j % 1000000000L, 9);
+    }
+
+    // a finite double with the configured DecimalFormat
+    public KFormat decimal(double d) {
+        String p = Config.getInstance().getDecimalFormat();
+        if (!p.equals(pattern))
+            setPattern(p);
+        if (fast) {
+            double a = Math.abs(d);
+            long scale = POW10[maxFraction];
+            if (a < 1e15 && a == Math.rint(a)) {
+                if (Double.doubleToRawLongBits(d) < 0)
+                    append(minus);
+                append((long) a);
+                if (minFraction > 0)
+                    append(separator).pad(0, minFraction);
+                return this;
+            }
+            if (a * scale < 1e15) {
+                long ip = (long) a;
+                double fs = (a - ip) * scale, fl = Math.floor(fs), r = fs - fl;
+                // the text is that of the shortest decimal of d, which rounds the same way unless near a tie
+                if (Math.abs(r - .5) > 4 * Math.ulp(a) * scale) {
+                    long f = (long) fl + (r > .5 ? 1 : 0);
+                    if (f == scale) {
+                        ip++;
+                        f = 0;
+                    }
+                    if (Double.doubleToRawLongBits(d) < 0)
+                        append(minus);
+                    append(ip);
+                    int k = maxFraction;
+                    for (; k > minFraction && f % 10 == 0; k--)
+                        f /= 10;
+                    if (k > 0)
+                        append(separator).pad(f, k);
+                    return this;
+                }
+            }
+        }
+        return append(decimalFormat.format(d));
+    }
+
+    private void setPattern(String p) {
+        pattern = p;
+        decimalFormat = new DecimalFormat(p);
+        DecimalFormat f = (DecimalFormat) decimalFormat;
+        DecimalFormatSymbols s = f.getDecimalFormatSymbols();
+        minFraction = f.getMinimumFractionDigits();
+        maxFraction = f.getMaximumFractionDigits();
+        separator = s.getDecimalSeparator();
+        minus = s.getMinusSign();
+        fast = !f.isGroupingUsed() && f.getMultiplier() == 1 && f.getMinimumIntegerDigits() == 1 && !f.isDecimalSeparatorAlwaysShown()
+                && f.getRoundingMode() == RoundingMode.HALF_EVEN && maxFraction < POW10.length - 3 && s.getZeroDigit() == '0'
+                && f.getPositivePrefix().isEmpty() && f.getPositiveSuffix().isEmpty() && f.getNegativeSuffix().isEmpty()
+                && f.getNegativePrefix().equals(String.valueOf(minus)) && !p.contains("E");
+    }
+}
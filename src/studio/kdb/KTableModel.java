@@ -1,5 +1,11 @@
 package studio.kdb;
 
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 
 public abstract class KTableModel extends AbstractTableModel {
@@ -31,56 +37,344 @@ public abstract class KTableModel extends AbstractTableModel {
         return null;
     }
 
+    // sorts and filters run one at a time on this thread
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Table worker");
+        t.setDaemon(true);
+        return t;
+    });
+
     protected int[] sortIndex = null;
-    protected int sorted = 0;
-    protected int sortedByColumn = -1;
+    // the sort keys, most significant first
+    protected int[] sortColumns = new int[0];
+    protected boolean[] sortAscending = new boolean[0];
+    // the keys of a sort running in the background, the rows keep the order above until it is done
+    private int[] pendingColumns;
+    private boolean[] pendingAscending;
+    private Future<?> pending;
+    // the filter on the rows and the bitmap of those passing it, null when all rows are shown
+    private RowFilter filter;
+    private long[] filterRows;
+    private Future<?> pendingFilter;
+    // the rows shown in order, the sort index composed with the filter
+    private int[] view;
+
+    public boolean isSortable() {
+        return true;
+    }
 
     public void asc(int col) {
-        sortIndex = null;
-        K.KBaseVector v = getColumn(col);
-        sortIndex = v.gradeUp();
-        sorted = 1;
-        sortedByColumn = col;
+        sortBy(new int[] {col}, new boolean[] {true});
     }
 
     public void desc(int col) {
-        sortIndex = null;
-        K.KBaseVector v = getColumn(col);
-        sortIndex = v.gradeDown();
-        sorted = -1;
-        sortedByColumn = col;
+        sortBy(new int[] {col}, new boolean[] {false});
+    }
+
+    private K.KBaseVector[] columns(int[] columns) {
+        K.KBaseVector[] c = new K.KBaseVector[columns.length];
+        for (int i = 0; i < c.length; i++)
+            c[i] = getColumn(columns[i]);
+        return c;
+    }
+
+    // a stable sort on several columns, rows equal in the first are ordered by the second and so on
+    public void sortBy(int[] columns, boolean[] ascending) {
+        cancelSort();
+        if (!isSortable())
+            return;
+        if (columns.length == 0) {
+            removeSort();
+            return;
+        }
+        sortIndex = Sorter.gradeUp(columns(columns), ascending);
+        sortColumns = columns.clone();
+        sortAscending = ascending.clone();
+        updateView();
+    }
+
+    // sorts on a background thread and calls done on the EDT once the rows are in the new order, a sort
+    // started before this one finishes is cancelled
+    public void sortInBackground(int[] columns, boolean[] ascending, final Runnable done) {
+        cancelSort();
+        if (!isSortable())
+            return;
+        if (columns.length == 0) {
+            removeSort();
+            fireTableDataChanged();
+            done.run();
+            return;
+        }
+        final K.KBaseVector[] c = columns(columns);
+        final int[] keys = pendingColumns = columns.clone();
+        final boolean[] asc = pendingAscending = ascending.clone();
+        final long[] bits = filterRows;
+        final Future<?>[] task = new Future<?>[1];
+        pending = task[0] = worker.submit(() -> {
+            int[] index = null, rows = null;
+            try {
+                index = Sorter.gradeUp(c, asc);
+                rows = view(index, bits);
+            }
+            catch (CancellationException e) {
+                return;
+            }
+            catch (Throwable e) {
+                System.err.println("Sort failed: " + e);
+                e.printStackTrace(System.err);
+            }
+            final int[] result = index, shown = rows;
+            SwingUtilities.invokeLater(() -> {
+                if (pending != task[0])
+                    return;
+                pending = null;
+                pendingColumns = null;
+                pendingAscending = null;
+                if (result != null) {
+                    sortIndex = result;
+                    sortColumns = keys;
+                    sortAscending = asc;
+                    if (bits == filterRows)
+                        view = shown;
+                    else
+                        updateView();
+                    fireTableDataChanged();
+                }
+                done.run();
+            });
+        });
+    }
+
+    public boolean isSorting() {
+        return pending != null;
+    }
+
+    // stops a background sort, the rows stay in their current order
+    public void cancelSort() {
+        if (pending != null)
+            pending.cancel(true);
+        pending = null;
+        pendingColumns = null;
+        pendingAscending = null;
+    }
+
+    // the keys asked for last, those of a running sort if there is one
+    private int[] keys() {
+        return pendingColumns != null ? pendingColumns : sortColumns;
+    }
+
+    private boolean[] ascending() {
+        return pendingAscending != null ? pendingAscending : sortAscending;
+    }
+
+    // a click on a column header cycles it through ascending, descending and unsorted, either as the only
+    // sort key or, when add is set, as the last of the current keys
+    public void cycleSort(int col, boolean add, Runnable done) {
+        int[] keys = keys();
+        boolean[] ascending = ascending();
+        int k = getSortRank(col), n = keys.length;
+        if (!add) {
+            if (k == 0 && n == 1)
+                sortInBackground(ascending[0] ? keys : new int[0], new boolean[] {false}, done);
+            else
+                sortInBackground(new int[] {col}, new boolean[] {true}, done);
+        } else if (k < 0) {
+            int[] columns = Arrays.copyOf(keys, n + 1);
+            boolean[] order = Arrays.copyOf(ascending, n + 1);
+            columns[n] = col;
+            order[n] = true;
+            sortInBackground(columns, order, done);
+        } else if (ascending[k]) {
+            boolean[] order = ascending.clone();
+            order[k] = false;
+            sortInBackground(keys, order, done);
+        } else {
+            int[] columns = new int[n - 1];
+            boolean[] order = new boolean[n - 1];
+            for (int i = 0, j = 0; i < n; i++)
+                if (i != k) {
+                    columns[j] = keys[i];
+                    order[j++] = ascending[i];
+                }
+            sortInBackground(columns, order, done);
+        }
     }
 
     public int getSortByColumn() {
-        return sortedByColumn;
+        return keys().length == 0 ? -1 : keys()[0];
+    }
+
+    public int getSortKeyCount() {
+        return keys().length;
+    }
+
+    // the position of col among the sort keys, -1 if it is not one
+    public int getSortRank(int col) {
+        int[] keys = keys();
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] == col)
+                return i;
+        return -1;
+    }
+
+    // whether col is a sort key in ascending order
+    public boolean isSortedAsc(int col) {
+        int k = getSortRank(col);
+        return k >= 0 && ascending()[k];
     }
 
     public boolean isSortedAsc() {
-        return sorted == 1;
+        return keys().length > 0 && ascending()[0];
     }
 
     public boolean isSortedDesc() {
-        return sorted == -1;
+        return keys().length > 0 && !ascending()[0];
     }
 
     public void removeSort() {
+        cancelSort();
         sortIndex = null;
-        sorted = 0;
-        sortedByColumn = -1;
+        sortColumns = new int[0];
+        sortAscending = new boolean[0];
+        updateView();
+    }
+
+    // computes the statistics of a column on the worker, done runs on the event thread once they are cached
+    public void statsInBackground(int column, final Runnable done) {
+        final K.KBaseVector v = getColumn(column);
+        worker.submit(() -> {
+            try {
+                v.getStats();
+            }
+            catch (Throwable e) {
+                System.err.println("Column statistics failed: " + e);
+                e.printStackTrace(System.err);
+                return;
+            }
+            SwingUtilities.invokeLater(done);
+        });
+    }
+
+    // filters the rows on a background thread and calls done on the EDT once only the passing rows are shown,
+    // a null filter shows all rows again. A filter implying the current one only tests the rows shown now.
+    public void filterInBackground(final RowFilter f, final Runnable done) {
+        cancelFilter();
+        if (f == null) {
+            filter = null;
+            filterRows = null;
+            updateView();
+            fireTableDataChanged();
+            done.run();
+            return;
+        }
+        final long[] candidates = filter != null && f.implies(filter) ? filterRows : null;
+        final int[] order = sortIndex;
+        final Future<?>[] task = new Future<?>[1];
+        pendingFilter = task[0] = worker.submit(() -> {
+            long[] bits = null;
+            int[] rows = null;
+            try {
+                bits = f.apply(candidates);
+                rows = view(order, bits);
+            }
+            catch (CancellationException e) {
+                return;
+            }
+            catch (Throwable e) {
+                System.err.println("Filter failed: " + e);
+                e.printStackTrace(System.err);
+            }
+            final long[] result = bits;
+            final int[] shown = rows;
+            SwingUtilities.invokeLater(() -> {
+                if (pendingFilter != task[0])
+                    return;
+                pendingFilter = null;
+                if (result != null) {
+                    filter = f;
+                    filterRows = result;
+                    if (order == sortIndex)
+                        view = shown;
+                    else
+                        updateView();
+                    fireTableDataChanged();
+                }
+                done.run();
+            });
+        });
+    }
+
+    public boolean isFiltering() {
+        return pendingFilter != null;
+    }
+
+    public boolean isFiltered() {
+        return filter != null;
+    }
+
+    public void cancelFilter() {
+        if (pendingFilter != null)
+            pendingFilter.cancel(true);
+        pendingFilter = null;
+    }
+
+    private void updateView() {
+        view = view(sortIndex, filterRows);
+    }
+
+    // the rows of order, or all rows when it is null, that are set in bits
+    static int[] view(int[] order, long[] bits) {
+        if (bits == null)
+            return order;
+        int[] rows = new int[RowFilter.count(bits)];
+        int k = 0;
+        if (order == null) {
+            for (int w = 0; w < bits.length; w++)
+                for (long b = bits[w]; b != 0; b &= b - 1)
+                    rows[k++] = w << 6 | Long.numberOfTrailingZeros(b);
+        } else {
+            // parts of the order are counted then copied in parallel, each row is written and kept only if
+            // its bit is set rather than branching on the bit
+            int parts = Sorter.parts(order.length);
+            int[] start = new int[parts + 1];
+            if (parts > 1)
+                Sorter.each(parts, j -> {
+                    int c = 0;
+                    for (int i = Sorter.from(j, parts, order.length), e = Sorter.from(j + 1, parts, order.length); i < e; i++)
+                        c += (int) (bits[order[i] >>> 6] >>> order[i]) & 1;
+                    start[j + 1] = c;
+                });
+            for (int j = 0; j < parts; j++)
+                start[j + 1] = j + 1 == parts ? rows.length : start[j] + start[j + 1];
+            Sorter.each(parts, j -> {
+                int at = start[j], end = start[j + 1];
+                for (int i = Sorter.from(j, parts, order.length), e = Sorter.from(j + 1, parts, order.length); i < e && at < end; i++) {
+                    int row = order[i];
+                    rows[at] = row;
+                    at += (int) (bits[row >>> 6] >>> row) & 1;
+                }
+            });
+        }
+        return rows;
     }
 
     public Class getColumnClass(int col) {
-        return getColumn(col).getClass();
+        return getColumn(col).getVectorClass();
+    }
+
+    // reads the rows shown in their current order, so rows can be read without boxing each cell
+    public K.Cursor cursor(int col) {
+        return new K.Cursor(getColumn(col), view);
     }
 
     public Object getValueAt(int row,int col) {
-        row = (sortIndex == null) ? row : sortIndex[row];
+        row = (view == null) ? row : view[row];
         K.KBaseVector v = getColumn(col);
         return v.at(row);
     }
 
     public int getRowCount() {
-        return getColumn(0).getLength();
+        return view == null ? getColumn(0).getLength() : view.length;
     }
 
 }
@@ -0,0 +1,160 @@
+package studio.kdb;
+
+/**
+ * Open addressing hash index from the key columns of a keyed table to row numbers. Keys are hashed and
+ * compared through the vectors' primitive accessors, so looking up a row allocates nothing for numeric,
+ * temporal, symbol and guid keys. Rows are added as the table grows, the index is never rebuilt from scratch.
+ */
+public class KeyIndex {
+    private static final int LONG = 0, DOUBLE = 1, SYMBOL = 2, GUID = 3, OTHER = 4;
+
+    private final K.Flip flip;
+    private K.KBaseVector[] keys;
+    private final int[] kinds;
+    // row + 1 per slot, 0 when empty
+    private int[] table = new int[16];
+    private int size;
+
+    public KeyIndex(K.Flip keys) {
+        flip = keys;
+        this.keys = columns(keys);
+        kinds = new int[this.keys.length];
+        for (int i = 0; i < kinds.length; i++)
+            kinds[i] = kind(this.keys[i].getVectorClass());
+        update();
+    }
+
+    static K.KBaseVector[] columns(K.Flip f) {
+        K.KBaseVector[] c = new K.KBaseVector[f.y.getLength()];
+        for (int i = 0; i < c.length; i++)
+            c[i] = (K.KBaseVector) f.y.at(i);
+        return c;
+    }
+
+    private static int kind(Class<?> klass) {
+        if (klass == K.KSymbolVector.class)
+            return SYMBOL;
+        if (klass == K.KGuidVector.class)
+            return GUID;
+        if (klass == K.KDoubleVector.class || klass == K.KFloatVector.class || klass == K.KDatetimeVector.class)
+            return DOUBLE;
+        if (klass == K.KList.class)
+            return OTHER;
+        return LONG;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int rowCount() {
+        return keys.length == 0 ? 0 : keys[0].getLength();
+    }
+
+    private static int hash(K.KBaseVector v, int kind, int i) {
+        switch (kind) {
+            case LONG:
+                return Long.hashCode(v.getLong(i));
+            case DOUBLE:
+                return Double.hashCode(v.getDouble(i));
+            case SYMBOL:
+                return symbol(v, i).hashCode();
+            case GUID:
+                return Long.hashCode(guid(v, i).getMsb(at(v, i)) ^ guid(v, i).getLsb(at(v, i)));
+            default:
+                return v.at(i).toString(false).hashCode();
+        }
+    }
+
+    // the plain vector holding element i and its index there, looking through chunked columns
+    private static K.KBaseVector part(K.KBaseVector v, int i) {
+        return v instanceof K.KChunkedVector ? ((K.KChunkedVector) v).chunk(i) : v;
+    }
+
+    private static int at(K.KBaseVector v, int i) {
+        return v instanceof K.KChunkedVector ? ((K.KChunkedVector) v).offset(i) : i;
+    }
+
+    private static String symbol(K.KBaseVector v, int i) {
+        return ((K.KSymbolVector) part(v, i)).get(at(v, i));
+    }
+
+    private static K.KGuidVector guid(K.KBaseVector v, int i) {
+        return (K.KGuidVector) part(v, i);
+    }
+
+    private static boolean equal(K.KBaseVector x, int i, K.KBaseVector y, int j, int kind) {
+        switch (kind) {
+            case LONG:
+                return x.getLong(i) == y.getLong(j);
+            case DOUBLE:
+                return Double.doubleToLongBits(x.getDouble(i)) == Double.doubleToLongBits(y.getDouble(j));
+            case SYMBOL:
+                return symbol(x, i).equals(symbol(y, j));
+            case GUID:
+                return guid(x, i).getMsb(at(x, i)) == guid(y, j).getMsb(at(y, j))
+                        && guid(x, i).getLsb(at(x, i)) == guid(y, j).getLsb(at(y, j));
+            default:
+                return x.at(i).toString(false).equals(y.at(j).toString(false));
+        }
+    }
+
+    private int hash(K.KBaseVector[] c, int row) {
+        int h = 0;
+        for (int k = 0; k < c.length; k++)
+            h = 31 * h + hash(c[k], kinds[k], row);
+        h *= 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    // whether row in the columns c has the same key as row of the indexed table
+    private boolean matches(int indexed, K.KBaseVector[] c, int row) {
+        for (int k = 0; k < c.length; k++)
+            if (!equal(keys[k], indexed, c[k], row, kinds[k]))
+                return false;
+        return true;
+    }
+
+    // whether c can be looked up here, it needs the same number and types of key columns
+    public boolean accepts(K.KBaseVector[] c) {
+        if (c.length != keys.length)
+            return false;
+        for (int k = 0; k < c.length; k++)
+            if (c[k].getVectorClass() != keys[k].getVectorClass())
+                return false;
+        return true;
+    }
+
+    // the indexed row with the key of row in the columns c, or -1
+    public int find(K.KBaseVector[] c, int row) {
+        int mask = table.length - 1;
+        for (int slot = hash(c, row) & mask, r; (r = table[slot]) != 0; slot = slot + 1 & mask)
+            if (matches(r - 1, c, row))
+                return r - 1;
+        return -1;
+    }
+
+    // picks up columns replaced by appends and indexes the rows added since the last call
+    public void update() {
+        keys = columns(flip);
+        for (int row = size, rows = rowCount(); row < rows; row++) {
+            if (2 * (size + 1) > table.length)
+                grow();
+            insert(row);
+            size++;
+        }
+    }
+
+    private void insert(int row) {
+        int mask = table.length - 1, slot = hash(keys, row) & mask;
+        while (table[slot] != 0)
+            slot = slot + 1 & mask;
+        table[slot] = row + 1;
+    }
+
+    private void grow() {
+        table = new int[2 * table.length];
+        for (int row = 0; row < size; row++)
+            insert(row);
+    }
+}
@@ -21,6 +21,23 @@ public class LimitedWriter extends CharArrayWriter {
         super.write(c);
     }
 
+    public void write(char[] c, int off, int len) {
+        if ((size() + len) > limit) {
+            if (limit>size()) {
+                super.write(c, off, limit - size());
+            }
+            super.write(" ... ", 0, 5);
+            throw new LimitException();
+        }
+        super.write(c, off, len);
+    }
+
+    // empties the writer so it can be reused
+    public void reset(int limit) {
+        reset();
+        this.limit = limit;
+    }
+
     public void write(String s) throws IOException {
         if ((size() + s.length()) > limit) {
             if (limit>size()) {
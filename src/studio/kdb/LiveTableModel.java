@@ -0,0 +1,141 @@
+package studio.kdb;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.swing.Timer;
+
+/**
+ * Table model for a streamed table. Each column is a fixed capacity vector used as a ring so appending is
+ * O(1) and the oldest rows are evicted once capacity is reached. Rows can be added from any thread; they are
+ * staged and copied into the rings on the EDT at most FPS times a second, with one pair of row events per frame.
+ */
+public class LiveTableModel extends KTableModel {
+    public static final int FPS = 20;
+
+    private final K.KSymbolVector names;
+    private final K.KBaseVector[] columns;
+    private final int capacity;
+    private int first, size;
+    private final ConcurrentLinkedQueue<K.KBase[]> staged = new ConcurrentLinkedQueue<>();
+    private final Timer timer;
+
+    public LiveTableModel(K.KSymbolVector names, K.KBase[] template, int capacity) {
+        this.names = names;
+        this.capacity = capacity;
+        columns = new K.KBaseVector[template.length];
+        for (int i = 0; i < template.length; i++)
+            columns[i] = K.KBaseVector.newInstance(((K.KBaseVector) template[i]).getVectorClass(), capacity);
+        timer = new Timer(1000 / FPS, e -> flush());
+        timer.start();
+    }
+
+    // the column vectors of a table or a list of columns, null if x is neither
+    public static K.KBase[] columnsOf(K.KBase x) {
+        K.KBaseVector v = x instanceof K.Flip ? ((K.Flip) x).y : x instanceof K.KList ? (K.KList) x : null;
+        if (v == null || v.getLength() == 0)
+            return null;
+        K.KBase[] c = new K.KBase[v.getLength()];
+        for (int i = 0; i < c.length; i++)
+            if (!((c[i] = v.at(i)) instanceof K.KBaseVector))
+                return null;
+        return c;
+    }
+
+    // stages the rows of a table or a list of column vectors, callable from any thread
+    public boolean add(K.KBase x) {
+        K.KBase[] c = columnsOf(x);
+        if (c == null || c.length != columns.length)
+            return false;
+        for (int i = 0; i < c.length; i++)
+            if (((K.KBaseVector) c[i]).getVectorClass() != columns[i].getClass() && !(columns[i] instanceof K.KList))
+                return false;
+        staged.add(c);
+        return true;
+    }
+
+    public void flush() {
+        int oldSize = size, added = 0;
+        for (K.KBase[] c; (c = staged.poll()) != null;) {
+            int n = ((K.KBaseVector) c[0]).getLength();
+            added += n;
+            for (int i = 0; i < columns.length; i++)
+                append(columns[i], (K.KBaseVector) c[i], Math.max(0, n - capacity), Math.min(n, capacity));
+            int m = Math.min(n, capacity);
+            int evict = Math.max(0, size + m - capacity);
+            first = (first + evict) % capacity;
+            size += m - evict;
+        }
+        if (added == 0)
+            return;
+        if (added >= size)
+            fireTableDataChanged();
+        else {
+            int evicted = oldSize + added - size;
+            if (evicted > 0)
+                fireTableRowsDeleted(0, evicted - 1);
+            fireTableRowsInserted(size - added, size - 1);
+        }
+    }
+
+    // copies n rows of x from offset o to the slots following the current last row
+    private void append(K.KBaseVector ring, K.KBaseVector x, int o, int n) {
+        int at = (first + size) % capacity;
+        if (ring.getClass() != x.getVectorClass()) {
+            K.KBase[] a = (K.KBase[]) ring.getArray();
+            for (int i = 0; i < n; i++)
+                a[(at + i) % capacity] = x.at(o + i);
+            return;
+        }
+        int k = Math.min(n, capacity - at);
+        Object from = x.getArray();
+        System.arraycopy(from, o, ring.getArray(), at, k);
+        System.arraycopy(from, o + k, ring.getArray(), 0, n - k);
+    }
+
+    public void dispose() {
+        timer.stop();
+        staged.clear();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isKey(int column) {
+        return false;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public String getColumnName(int i) {
+        return names.at(i).toString(false);
+    }
+
+    public Class getColumnClass(int col) {
+        return columns[col].getClass();
+    }
+
+    public int getRowCount() {
+        return size;
+    }
+
+    public Object getValueAt(int row, int col) {
+        return columns[col].at((first + row) % capacity);
+    }
+
+    // a copy of the column in row order
+    public K.KBaseVector getColumn(int col) {
+        K.KBaseVector v = K.KBaseVector.newInstance(columns[col].getClass(), size);
+        int k = Math.min(size, capacity - first);
+        System.arraycopy(columns[col].getArray(), first, v.getArray(), 0, k);
+        System.arraycopy(columns[col].getArray(), 0, v.getArray(), k, size - k);
+        return v;
+    }
+
+    // rows keep moving under a sort, so live tables stay in arrival order
+    public boolean isSortable() {
+        return false;
+    }
+}
@@ -0,0 +1,136 @@
+package studio.kdb;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Decides whether a message can be decoded before any of it is allocated, from the size in its header and
+ * the type of its top level object, and estimates the heap retained by decoded results.
+ */
+public class MemoryBudget {
+    public enum Decision { LOAD, SPILL, REFUSE }
+
+    // asked when a message needs more than the budget allows, SPILL is only offered when spillable is true
+    public interface Approver {
+        Decision decide(long estimate, long available, boolean spillable);
+    }
+
+    // type of a body whose first byte has not been read
+    public static final int UNKNOWN = 256;
+    private static final int SAMPLE = 4096;
+
+    private final Approver approver;
+
+    public MemoryBudget(Approver approver) {
+        this.approver = approver;
+    }
+
+    // heap that can still be allocated, for results the configured share of it
+    public static long available() {
+        Runtime r = Runtime.getRuntime();
+        long free = r.maxMemory() - (r.totalMemory() - r.freeMemory());
+        return free / 100 * Config.getInstance().getMemoryBudgetPercent();
+    }
+
+    // decoded bytes of a message body of size bytes whose top level object has the given type
+    public static long estimate(long size, int type) {
+        if (type < 0)
+            return 64;
+        switch (type) {
+            case 1: case 2: case 4: case 5: case 6: case 7: case 8: case 9:
+            case 12: case 13: case 14: case 15: case 16: case 17: case 18: case 19:
+                return size;
+            case 10:
+                return 2 * size;
+            case 11:
+                return 4 * size;
+            case 0:
+                return 8 * size;
+            default:
+                return 3 * size;
+        }
+    }
+
+    // how a message estimated to need estimate bytes should be decoded
+    public Decision admit(long estimate, boolean spillable) {
+        if (estimate <= available())
+            return Decision.LOAD;
+        System.gc();
+        long available = available();
+        if (estimate <= available)
+            return Decision.LOAD;
+        Decision d = approver == null ? Decision.REFUSE : approver.decide(estimate, available, spillable);
+        return d == Decision.SPILL && !spillable ? Decision.REFUSE : d;
+    }
+
+    // approximate heap held by x and everything it refers to
+    public static long retained(K.KBase x) {
+        if (x instanceof K.Dict)
+            return 24 + retained(((K.Dict) x).x) + retained(((K.Dict) x).y);
+        if (x instanceof K.Flip)
+            return 24 + retained(((K.Flip) x).x) + retained(((K.Flip) x).y);
+        if (x instanceof K.KList) {
+            K.KList l = (K.KList) x;
+            long n = 16 + 4L * l.getLength();
+            for (int i = 0; i < l.getLength(); i++)
+                n += retained(l.at(i));
+            return n;
+        }
+        if (x instanceof K.KLazyList) {
+            K.KLazyList l = (K.KLazyList) x;
+            return 16 + l.getByteCount() + 64L * l.getResidentLength() + 8L * l.getPageCount();
+        }
+        if (x instanceof K.KPagedVector) {
+            K.KPagedVector m = (K.KPagedVector) x;
+            Class<?> klass = m.getVectorClass();
+            return 16 + 8L * m.getPageCount() + (long) m.getResidentLength() * (klass == K.KSymbolVector.class ? 16 : width(klass));
+        }
+        if (x instanceof K.KBaseVector) {
+            K.KBaseVector v = (K.KBaseVector) x;
+            Class<?> klass = v.getVectorClass();
+            if (klass == K.KSymbolVector.class)
+                return 16 + 4L * v.getLength() + symbols(v);
+            return 16 + (long) v.getLength() * width(klass);
+        }
+        return 24;
+    }
+
+    private static int width(Class<?> klass) {
+        if (klass == K.KBooleanVector.class || klass == K.KByteVector.class)
+            return 1;
+        if (klass == K.KShortVector.class || klass == K.KCharacterVector.class)
+            return 2;
+        if (klass == K.KLongVector.class || klass == K.KDoubleVector.class || klass == K.KTimestampVector.class
+                || klass == K.KTimespanVector.class || klass == K.KDatetimeVector.class)
+            return 8;
+        if (klass == K.KGuidVector.class)
+            return 16;
+        return 4;
+    }
+
+    // the strings of a symbol vector from the distinct ones among a sample, scaled up only when the sample
+    // is mostly distinct as repeating symbols come from a small set
+    private static long symbols(K.KBaseVector v) {
+        int n = Math.min(v.getLength(), SAMPLE);
+        if (n == 0)
+            return 0;
+        Set<String> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        long chars = 0;
+        for (int i = 0; i < n; i++) {
+            String s = ((K.KSymbol) v.at(i)).s;
+            if (distinct.add(s))
+                chars += s.length();
+        }
+        double scale = 2 * distinct.size() > n ? (double) v.getLength() / n : 1;
+        return (long) ((40L * distinct.size() + 2 * chars) * scale);
+    }
+
+    public static String format(long bytes) {
+        if (bytes < 1 << 20)
+            return (bytes >> 10) + " kB";
+        if (bytes < 1L << 30)
+            return String.format("%.1f MB", bytes / (double) (1 << 20));
+        return String.format("%.2f GB", bytes / (double) (1L << 30));
+    }
+}
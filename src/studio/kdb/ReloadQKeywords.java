@@ -4,24 +4,15 @@ public class ReloadQKeywords {
     public ReloadQKeywords(final Server server) {
         if (server != null) {
             Runnable runner = () -> {
-                kx.c c = null;
                 Object r = null;
 
                 try {
-                    c = ConnectionPool.getInstance().leaseConnection(server);
-                    ConnectionPool.getInstance().checkConnected(c);
-                    c.k(new K.KCharacterVector("key`.q"));
-                    r = c.getResponse();
+                    r = ConnectionPool.getInstance().submit(server, new K.KCharacterVector("key`.q")).get();
                 }
                 catch (Throwable t) {
                     System.err.println("Error in getting connection to " + server.getConnectionString(true) + ": " + t);
                     t.printStackTrace(System.err);
                     ConnectionPool.getInstance().purge(server);
-                    c = null;
-                }
-                finally {
-                    if (c != null)
-                        ConnectionPool.getInstance().freeConnection(server,c);
                 }
                 if (r instanceof K.KSymbolVector)
                     Config.getInstance().saveQKeywords((String[]) ((K.KSymbolVector) r).getArray());
@@ -0,0 +1,889 @@
+package studio.kdb;
+
+import java.nio.CharBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * A filter on the rows of a table model written like a q where clause, for example
+ * sym in `a`b and (price within 10 20 or null size). Predicates are =, <>, <, <=, >, >=, within, in, like and
+ * null, combined with and, or, not and parentheses. Each compiles to a loop over the column array testing 64
+ * rows at a time, the filter is evaluated in parallel chunks into a bitmap of the passing rows.
+ */
+public class RowFilter {
+    // bitmap words per task
+    private static final int WORDS = 1 << 10;
+    private static final long NS_DAY = 86400000000000L;
+
+    private final Node root;
+    private final int length;
+    private final K.KBaseVector[] columns;
+
+    private RowFilter(Node root, int length, K.KBaseVector[] columns) {
+        this.root = root;
+        this.length = length;
+        this.columns = columns;
+    }
+
+    // the filter for text over the columns of model, IllegalArgumentException if it cannot be compiled. Only
+    // the types of the columns are looked at, their values are read when the filter is applied
+    public static RowFilter compile(String text, KTableModel model) {
+        Parser p = new Parser(tokens(text), model);
+        Node root = p.or();
+        if (p.at < p.tokens.size())
+            throw new IllegalArgumentException("Unexpected " + p.tokens.get(p.at));
+        K.KBaseVector[] columns = new K.KBaseVector[model.getColumnCount()];
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = model.getColumn(i);
+        return new RowFilter(root, p.length, columns);
+    }
+
+    // whether every row passing this filter passes prev, so this only needs to test the rows prev passed
+    public boolean implies(RowFilter prev) {
+        return prev.length == length && root.implies(prev.root);
+    }
+
+    // the passing rows among candidates, all rows when it is null, stopping with a CancellationException
+    // soon after the calling thread is interrupted. Chunked and paged columns are flattened here, so this
+    // belongs on the table worker rather than the event thread
+    public long[] apply(long[] candidates) {
+        root.bind(columns);
+        long[] bits = new long[length + 63 >>> 6];
+        ForkJoinPool.commonPool().invoke(new Eval(Thread.currentThread(), candidates, bits, 0, bits.length));
+        return bits;
+    }
+
+    private class Eval extends RecursiveAction {
+        private final Thread caller;
+        private final long[] candidates, bits;
+        private final int from, to;
+
+        Eval(Thread caller, long[] candidates, long[] bits, int from, int to) {
+            this.caller = caller;
+            this.candidates = candidates;
+            this.bits = bits;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (to - from > WORDS) {
+                int mid = from + Math.max(1, (to - from) / 2 / WORDS) * WORDS;
+                invokeAll(new Eval(caller, candidates, bits, from, mid), new Eval(caller, candidates, bits, mid, to));
+                return;
+            }
+            if (caller.isInterrupted())
+                throw new CancellationException("Filter cancelled");
+            for (int w = from; w < to; w++) {
+                long c = candidates == null ? valid(w) : candidates[w];
+                if (c != 0)
+                    bits[w] = root.word(w) & c;
+            }
+        }
+    }
+
+    // the rows of word w below the length
+    private long valid(int w) {
+        int n = length - (w << 6);
+        return n >= 64 ? -1L : (1L << n) - 1;
+    }
+
+    public static int count(long[] bits) {
+        int n = 0;
+        for (long b : bits)
+            n += Long.bitCount(b);
+        return n;
+    }
+
+    private static abstract class Node {
+        // the bits of the passing rows among rows 64 * w to 64 * w + 63
+        abstract long word(int w);
+
+        abstract boolean implies(Node other);
+
+        // reads the columns the predicates test
+        abstract void bind(K.KBaseVector[] columns);
+    }
+
+    private static class And extends Node {
+        private final Node[] parts;
+
+        And(List<Node> parts) {
+            this.parts = parts.toArray(new Node[0]);
+        }
+
+        long word(int w) {
+            long m = -1L;
+            for (int i = 0; i < parts.length && m != 0; i++)
+                m &= parts[i].word(w);
+            return m;
+        }
+
+        void bind(K.KBaseVector[] columns) {
+            for (Node p : parts)
+                p.bind(columns);
+        }
+
+        boolean implies(Node other) {
+            if (other instanceof And) {
+                for (Node o : ((And) other).parts)
+                    if (!implies(o))
+                        return false;
+                return true;
+            }
+            for (Node p : parts)
+                if (p.implies(other))
+                    return true;
+            return false;
+        }
+    }
+
+    private static class Or extends Node {
+        private final Node[] parts;
+
+        Or(List<Node> parts) {
+            this.parts = parts.toArray(new Node[0]);
+        }
+
+        long word(int w) {
+            long m = 0;
+            for (Node p : parts)
+                m |= p.word(w);
+            return m;
+        }
+
+        void bind(K.KBaseVector[] columns) {
+            for (Node p : parts)
+                p.bind(columns);
+        }
+
+        boolean implies(Node other) {
+            for (Node p : parts)
+                if (!p.implies(other))
+                    return false;
+            return true;
+        }
+    }
+
+    private static class Not extends Node {
+        private final Node x;
+        private final int length;
+
+        Not(Node x, int length) {
+            this.x = x;
+            this.length = length;
+        }
+
+        long word(int w) {
+            int n = length - (w << 6);
+            return ~x.word(w) & (n >= 64 ? -1L : (1L << n) - 1);
+        }
+
+        boolean implies(Node other) {
+            return other instanceof Not && ((Not) other).x.implies(x);
+        }
+
+        void bind(K.KBaseVector[] columns) {
+            x.bind(columns);
+        }
+    }
+
+    // a predicate on one column, ranges of integral and floating columns are kept to see which filters
+    // imply which as the user types
+    private static abstract class Leaf extends Node {
+        final int length, column;
+        String text;
+        boolean ranged;
+        long lo, hi;
+        String pattern;
+
+        Leaf(int length, int column) {
+            this.length = length;
+            this.column = column;
+        }
+
+        boolean implies(Node other) {
+            if (!(other instanceof Leaf) || ((Leaf) other).column != column)
+                return false;
+            Leaf o = (Leaf) other;
+            if (text.equals(o.text))
+                return true;
+            if (ranged && o.ranged)
+                return lo > hi || lo >= o.lo && hi <= o.hi;
+            return pattern != null && o.pattern != null && narrows(pattern, o.pattern);
+        }
+
+        void range(long lo, long hi) {
+            ranged = true;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        int end(int w) {
+            return Math.min(length, (w << 6) + 64);
+        }
+
+        void bind(K.KBaseVector[] columns) {
+            bind(K.KBaseVector.plain(columns[column]));
+        }
+
+        // v is the column, chunked and paged ones as a plain copy
+        abstract void bind(K.KBaseVector v);
+    }
+
+    // q like patterns matching the text of p also match that of q
+    private static boolean narrows(String p, String q) {
+        if (wild(q, 1, q.length() - 1) && !wild(p, 1, p.length() - 1) || q.length() < 2 || p.length() < 2)
+            return false;
+        String x = q.substring(1, q.length() - 1);
+        if (q.startsWith("*") && q.endsWith("*") && p.startsWith("*") && p.endsWith("*"))
+            return !wild(x, 0, x.length()) && !wild(p, 1, p.length() - 1) && p.contains(x);
+        if (!q.startsWith("*") && q.endsWith("*") && !p.startsWith("*") && p.endsWith("*"))
+            return !wild(q, 0, q.length() - 1) && !wild(p, 0, p.length() - 1) && p.startsWith(q.substring(0, q.length() - 1));
+        return false;
+    }
+
+    private static boolean wild(String s, int from, int to) {
+        for (int i = from; i < to; i++)
+            if ("*?[".indexOf(s.charAt(i)) >= 0)
+                return true;
+        return false;
+    }
+
+    // in the loops below a row is in the range when its value less lo, as an unsigned number, is at most
+    // hi - lo, which the JIT turns into a conditional move rather than a branch
+    private static class LongRange extends Leaf {
+        private long[] a;
+
+        LongRange(int length, int column) {
+            super(length, column);
+        }
+
+        void bind(K.KBaseVector v) {
+            a = (long[]) v.getArray();
+        }
+
+        long word(int w) {
+            long m = 0, lo = this.lo, span = hi - lo;
+            if (lo > hi)
+                return 0;
+            for (int i = w << 6, e = end(w); i < e; i++)
+                m |= (Long.compareUnsigned(a[i] - lo, span) <= 0 ? 1L : 0L) << i;
+            return m;
+        }
+    }
+
+    private static class IntRange extends Leaf {
+        private int[] a;
+
+        IntRange(int length, int column) {
+            super(length, column);
+        }
+
+        void bind(K.KBaseVector v) {
+            a = (int[]) v.getArray();
+        }
+
+        long word(int w) {
+            long m = 0, lo = this.lo, span = hi - lo;
+            if (lo > hi)
+                return 0;
+            for (int i = w << 6, e = end(w); i < e; i++)
+                m |= (Long.compareUnsigned(a[i] - lo, span) <= 0 ? 1L : 0L) << i;
+            return m;
+        }
+    }
+
+    // floats and doubles, the range of sort keys as the doubles at its ends and whether NaN is in it
+    private static class DoubleRange extends Leaf {
+        private static final long NEGATIVE_INFINITY = Sorter.doubleKey(Double.NEGATIVE_INFINITY) ^ Long.MIN_VALUE;
+        private static final long POSITIVE_INFINITY = Sorter.doubleKey(Double.POSITIVE_INFINITY) ^ Long.MIN_VALUE;
+
+        private double[] d;
+        private float[] f;
+        private double low, high;
+        private long nulls;
+
+        DoubleRange(int length, int column) {
+            super(length, column);
+        }
+
+        void bind(K.KBaseVector v) {
+            Object a = v.getArray();
+            d = a instanceof double[] ? (double[]) a : null;
+            f = a instanceof float[] ? (float[]) a : null;
+        }
+
+        void range(long lo, long hi) {
+            super.range(lo, hi);
+            nulls = lo == Long.MIN_VALUE && hi >= lo ? 1 : 0;
+            low = lo <= NEGATIVE_INFINITY ? Double.NEGATIVE_INFINITY : fromKey(lo, 0d);
+            high = hi < NEGATIVE_INFINITY ? Double.NaN : hi >= POSITIVE_INFINITY ? Double.POSITIVE_INFINITY : fromKey(hi, -Double.MIN_VALUE);
+        }
+
+        // the double with the signed sort key k, zero for the key between -0 and 0 that no double has
+        private static double fromKey(long k, double zero) {
+            long b = k >= 0 ? k : ~(k ^ Long.MIN_VALUE);
+            return b == Long.MIN_VALUE ? zero : Double.longBitsToDouble(b);
+        }
+
+        long word(int w) {
+            long m = 0, nulls = this.nulls;
+            double low = this.low, high = this.high;
+            for (int i = w << 6, e = end(w); i < e; i++) {
+                double x = d != null ? d[i] : f[i];
+                m |= ((x >= low ? 1L : 0L) & (x <= high ? 1L : 0L) | (x != x ? nulls : 0L)) << i;
+            }
+            return m;
+        }
+    }
+
+    // bytes, shorts, booleans and chars through the vector
+    private static class ValueRange extends Leaf {
+        private K.KBaseVector v;
+
+        ValueRange(int length, int column) {
+            super(length, column);
+        }
+
+        void bind(K.KBaseVector v) {
+            this.v = v;
+        }
+
+        long word(int w) {
+            long m = 0, lo = this.lo, span = hi - lo;
+            if (lo > hi)
+                return 0;
+            for (int i = w << 6, e = end(w); i < e; i++)
+                m |= (Long.compareUnsigned(v.getLong(i) - lo, span) <= 0 ? 1L : 0L) << i;
+            return m;
+        }
+    }
+
+    // symbols, strings and anything else by their text, encoded symbols tested once per distinct symbol
+    private static class TextTest extends Leaf {
+        private final Predicate<CharSequence> test;
+        private K.KBaseVector v;
+        private String[] strings;
+        // the ranks of encoded symbols and 1 for those of the dictionary passing
+        private int[] codes;
+        private long[] accept;
+
+        TextTest(Predicate<CharSequence> test, int length, int column) {
+            super(length, column);
+            this.test = test;
+        }
+
+        void bind(K.KBaseVector v) {
+            this.v = v;
+            String[] dict = v instanceof K.KSymbolVector ? ((K.KSymbolVector) v).dictionary() : null;
+            codes = dict == null ? null : ((K.KSymbolVector) v).ranks();
+            if (codes != null) {
+                accept = new long[dict.length];
+                for (int i = 0; i < dict.length; i++)
+                    accept[i] = test.test(dict[i]) ? 1 : 0;
+            }
+            strings = codes == null && v instanceof K.KSymbolVector ? (String[]) v.getArray() : null;
+        }
+
+        long word(int w) {
+            long m = 0;
+            if (codes != null) {
+                for (int i = w << 6, e = end(w); i < e; i++)
+                    m |= accept[codes[i]] << i;
+                return m;
+            }
+            for (int i = w << 6, e = end(w); i < e; i++)
+                if (test.test(strings != null ? strings[i] : text(v.at(i))))
+                    m |= 1L << i;
+            return m;
+        }
+    }
+
+    private static CharSequence text(K.KBase x) {
+        if (x instanceof K.KCharacterVector)
+            return CharBuffer.wrap((char[]) ((K.KCharacterVector) x).getArray(), 0, ((K.KCharacterVector) x).getLength());
+        if (x instanceof K.KCharacter)
+            return String.valueOf(((K.KCharacter) x).c);
+        if (x instanceof K.KSymbol)
+            return ((K.KSymbol) x).s;
+        return x.toString(false);
+    }
+
+    private static class NullTest extends Leaf {
+        private K.KBaseVector v;
+
+        NullTest(int length, int column) {
+            super(length, column);
+        }
+
+        void bind(K.KBaseVector v) {
+            this.v = v;
+        }
+
+        long word(int w) {
+            long m = 0;
+            for (int i = w << 6, e = end(w); i < e; i++)
+                if (v.isNull(i))
+                    m |= 1L << i;
+            return m;
+        }
+    }
+
+    // compares text as strings do
+    private static int compare(CharSequence x, CharSequence y) {
+        for (int i = 0, n = Math.min(x.length(), y.length()); i < n; i++)
+            if (x.charAt(i) != y.charAt(i))
+                return x.charAt(i) - y.charAt(i);
+        return x.length() - y.length();
+    }
+
+    // q like: * any text, ? any char, [abc] and [^abc] one of or none of the chars
+    static boolean like(CharSequence s, String p) {
+        int i = 0, j = 0, star = -1, mark = 0;
+        while (i < s.length()) {
+            int k = j < p.length() ? match(s.charAt(i), p, j) : -1;
+            if (k >= 0) {
+                i++;
+                j = k;
+            } else if (j < p.length() && p.charAt(j) == '*') {
+                star = j++;
+                mark = i;
+            } else if (star >= 0) {
+                j = star + 1;
+                i = ++mark;
+            } else
+                return false;
+        }
+        while (j < p.length() && p.charAt(j) == '*')
+            j++;
+        return j == p.length();
+    }
+
+    // the position after the pattern element at j if it matches c, -1 otherwise
+    private static int match(char c, String p, int j) {
+        char x = p.charAt(j);
+        if (x == '*')
+            return -1;
+        if (x == '?')
+            return j + 1;
+        if (x == '[') {
+            int end = p.indexOf(']', j + 2);
+            if (end > 0) {
+                boolean negate = p.charAt(j + 1) == '^';
+                boolean found = false;
+                for (int k = negate ? j + 2 : j + 1; k < end; k++)
+                    if (k + 2 < end && p.charAt(k + 1) == '-') {
+                        found |= c >= p.charAt(k) && c <= p.charAt(k + 2);
+                        k += 2;
+                    } else
+                        found |= c == p.charAt(k);
+                return found != negate ? end + 1 : -1;
+            }
+        }
+        return c == x ? j + 1 : -1;
+    }
+
+    private static final int WORD = 0, STRING = 1, SYMBOLS = 2, PUNCT = 3;
+
+    private static class Token {
+        final int kind;
+        final String text;
+        final List<String> symbols;
+
+        Token(int kind, String text, List<String> symbols) {
+            this.kind = kind;
+            this.text = text;
+            this.symbols = symbols;
+        }
+
+        boolean is(String s) {
+            return kind != STRING && kind != SYMBOLS && text.equals(s);
+        }
+
+        public String toString() {
+            return text;
+        }
+    }
+
+    private static List<Token> tokens(String s) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0, n = s.length();
+        while (i < n) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                StringBuilder b = new StringBuilder();
+                int j = i + 1;
+                for (; j < n && s.charAt(j) != '"'; j++) {
+                    if (s.charAt(j) == '\\' && j + 1 < n)
+                        j++;
+                    b.append(s.charAt(j));
+                }
+                if (j == n)
+                    throw new IllegalArgumentException("Unterminated string");
+                tokens.add(new Token(STRING, b.toString(), null));
+                i = j + 1;
+            } else if (c == '`') {
+                List<String> symbols = new ArrayList<>();
+                int start = i;
+                while (i < n && s.charAt(i) == '`') {
+                    int j = ++i;
+                    while (i < n && !Character.isWhitespace(s.charAt(i)) && "`();=<>&|".indexOf(s.charAt(i)) < 0)
+                        i++;
+                    symbols.add(s.substring(j, i));
+                }
+                tokens.add(new Token(SYMBOLS, s.substring(start, i), symbols));
+            } else if ("();=&|".indexOf(c) >= 0) {
+                tokens.add(new Token(PUNCT, String.valueOf(c), null));
+                i++;
+            } else if (c == '<' || c == '>') {
+                boolean two = i + 1 < n && (s.charAt(i + 1) == '=' || c == '<' && s.charAt(i + 1) == '>');
+                tokens.add(new Token(PUNCT, s.substring(i, i + (two ? 2 : 1)), null));
+                i += two ? 2 : 1;
+            } else {
+                int j = i;
+                while (i < n && !Character.isWhitespace(s.charAt(i)) && "\"`();=<>&|".indexOf(s.charAt(i)) < 0)
+                    i++;
+                tokens.add(new Token(WORD, s.substring(j, i), null));
+            }
+        }
+        return tokens;
+    }
+
+    private static class Parser {
+        final List<Token> tokens;
+        final KTableModel model;
+        final int length;
+        int at;
+
+        Parser(List<Token> tokens, KTableModel model) {
+            this.tokens = tokens;
+            this.model = model;
+            length = model.getColumnCount() == 0 ? 0 : model.getColumn(0).getLength();
+        }
+
+        Token peek() {
+            return at < tokens.size() ? tokens.get(at) : null;
+        }
+
+        Token next() {
+            Token t = peek();
+            if (t == null)
+                throw new IllegalArgumentException("Unexpected end of filter");
+            at++;
+            return t;
+        }
+
+        boolean accept(String s) {
+            Token t = peek();
+            if (t != null && t.is(s)) {
+                at++;
+                return true;
+            }
+            return false;
+        }
+
+        Node or() {
+            List<Node> parts = new ArrayList<>();
+            do
+                parts.add(and());
+            while (accept("or") || accept("|"));
+            return parts.size() == 1 ? parts.get(0) : new Or(parts);
+        }
+
+        Node and() {
+            List<Node> parts = new ArrayList<>();
+            do
+                parts.add(factor());
+            while (accept("and") || accept("&"));
+            return parts.size() == 1 ? parts.get(0) : new And(parts);
+        }
+
+        Node factor() {
+            if (accept("not"))
+                return new Not(factor(), length);
+            if (accept("(")) {
+                Node x = or();
+                if (!accept(")"))
+                    throw new IllegalArgumentException("Missing )");
+                return x;
+            }
+            if (accept("null")) {
+                int c = column(next());
+                return leaf(c, "null", new ArrayList<>());
+            }
+            int c = column(next());
+            Token op = next();
+            if (op.kind != PUNCT && op.kind != WORD)
+                throw new IllegalArgumentException("Expected a comparison after " + model.getColumnName(c));
+            String o = op.text;
+            List<Token> values = new ArrayList<>();
+            if (o.equals("in") || o.equals("within"))
+                list(values);
+            else if (o.equals("=") || o.equals("<>") || o.equals("<") || o.equals("<=") || o.equals(">") || o.equals(">=") || o.equals("like"))
+                values.add(literal(next()));
+            else
+                throw new IllegalArgumentException("Unknown comparison " + o);
+            if (o.equals("within") && values.size() != 2)
+                throw new IllegalArgumentException("within takes a lower and an upper bound");
+            if (o.equals("<>")) {
+                return new Not(leaf(c, "=", values), length);
+            }
+            return leaf(c, o, values);
+        }
+
+        Token literal(Token t) {
+            if (t.kind == PUNCT)
+                throw new IllegalArgumentException("Unexpected " + t);
+            return t;
+        }
+
+        // (a;b;c), a run of literals or `a`b`c
+        void list(List<Token> values) {
+            if (accept("(")) {
+                do
+                    values.add(literal(next()));
+                while (accept(";"));
+                if (!accept(")"))
+                    throw new IllegalArgumentException("Missing )");
+                return;
+            }
+            Token t = literal(next());
+            if (t.kind == SYMBOLS) {
+                for (String s : t.symbols)
+                    values.add(new Token(STRING, s, null));
+                return;
+            }
+            values.add(t);
+            for (Token u; (u = peek()) != null && u.kind != PUNCT && !u.is("and") && !u.is("or"); at++)
+                values.add(u);
+        }
+
+        int column(Token t) {
+            for (int i = 0; i < model.getColumnCount(); i++)
+                if (model.getColumnName(i).equals(t.text))
+                    return i;
+            throw new IllegalArgumentException("No column " + t);
+        }
+
+        Leaf leaf(int c, String op, List<Token> values) {
+            Class<? extends K.KBaseVector> klass = model.getColumn(c).getVectorClass();
+            // an empty vector of the column's type tells which array its values are kept in
+            Object a = K.KBaseVector.newInstance(klass, 0).getArray();
+            Leaf leaf;
+            if (klass == K.KSymbolVector.class || klass == K.KList.class || klass == K.KGuidVector.class)
+                leaf = text(c, op, values);
+            else if (op.equals("like") || op.equals("in"))
+                leaf = values(klass, c, op, values);
+            else if (op.equals("null") && !(a instanceof long[] || a instanceof int[] || a instanceof double[] || a instanceof float[]))
+                leaf = new NullTest(length, c);
+            else {
+                // nulls are the smallest values of these
+                if (op.equals("null")) {
+                    op = "=";
+                    values.add(new Token(WORD, "0N", null));
+                }
+                leaf = a instanceof long[] ? new LongRange(length, c)
+                       : a instanceof int[] ? new IntRange(length, c)
+                       : a instanceof double[] || a instanceof float[] ? new DoubleRange(length, c)
+                       : new ValueRange(length, c);
+                long x = value(klass, values.get(0).text), y = values.size() > 1 ? value(klass, values.get(1).text) : x;
+                long lo = Long.MIN_VALUE, hi = Long.MAX_VALUE;
+                switch (op) {
+                    case "=":
+                        lo = hi = x;
+                        break;
+                    case "within":
+                        lo = x;
+                        hi = y;
+                        break;
+                    // nothing is below the smallest value or above the largest, an empty range rather
+                    // than a bound that wraps around
+                    case "<":
+                        if (x == Long.MIN_VALUE) {
+                            lo = 1;
+                            hi = 0;
+                        } else
+                            hi = x - 1;
+                        break;
+                    case "<=":
+                        hi = x;
+                        break;
+                    case ">":
+                        if (x == Long.MAX_VALUE) {
+                            lo = 1;
+                            hi = 0;
+                        } else
+                            lo = x + 1;
+                        break;
+                    case ">=":
+                        lo = x;
+                        break;
+                }
+                leaf.range(lo, hi);
+            }
+            StringBuilder b = new StringBuilder().append(c).append(' ').append(op);
+            for (Token t : values)
+                b.append(' ').append(t.text);
+            leaf.text = b.toString();
+            return leaf;
+        }
+
+        // in and like on numeric columns, by the text of the values
+        Leaf values(Class<?> klass, int c, String op, List<Token> values) {
+            if (op.equals("like")) {
+                String p = values.get(0).text;
+                return new TextTest(s -> like(s, p), length, c);
+            }
+            long[] keys = new long[values.size()];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = value(klass, values.get(i).text);
+            java.util.Arrays.sort(keys);
+            boolean floating = klass == K.KDoubleVector.class || klass == K.KFloatVector.class || klass == K.KDatetimeVector.class;
+            return new Leaf(length, c) {
+                private K.KBaseVector v;
+
+                void bind(K.KBaseVector v) {
+                    this.v = v;
+                }
+
+                long word(int w) {
+                    long m = 0;
+                    for (int i = w << 6, e = end(w); i < e; i++) {
+                        long x = floating ? Sorter.doubleKey(v.getDouble(i)) ^ Long.MIN_VALUE : v.getLong(i);
+                        if (java.util.Arrays.binarySearch(keys, x) >= 0)
+                            m |= 1L << i;
+                    }
+                    return m;
+                }
+            };
+        }
+
+        // symbols, strings and guids, encoded symbols through their dictionary
+        Leaf text(int c, String op, List<Token> values) {
+            List<String> texts = new ArrayList<>();
+            for (Token t : values)
+                if (t.kind == SYMBOLS)
+                    texts.addAll(t.symbols);
+                else
+                    texts.add(t.text);
+            Leaf leaf = new TextTest(predicate(op, texts), length, c);
+            if (op.equals("like"))
+                leaf.pattern = texts.get(0);
+            return leaf;
+        }
+
+        Predicate<CharSequence> predicate(String op, List<String> texts) {
+            String x = texts.isEmpty() ? "" : texts.get(0), y = texts.size() > 1 ? texts.get(1) : x;
+            switch (op) {
+                case "null":
+                    return s -> s.length() == 0;
+                case "=":
+                    return s -> compare(s, x) == 0;
+                case "<":
+                    return s -> compare(s, x) < 0;
+                case "<=":
+                    return s -> compare(s, x) <= 0;
+                case ">":
+                    return s -> compare(s, x) > 0;
+                case ">=":
+                    return s -> compare(s, x) >= 0;
+                case "within":
+                    return s -> compare(s, x) >= 0 && compare(s, y) <= 0;
+                case "like":
+                    return s -> like(s, x);
+                default:
+                    return s -> {
+                        for (String t : texts)
+                            if (compare(s, t) == 0)
+                                return true;
+                        return false;
+                    };
+            }
+        }
+    }
+
+    // a literal as the value it is stored as in a vector of klass, doubles as their signed sort keys
+    static long value(Class<?> klass, String s) {
+        try {
+            boolean floating = klass == K.KDoubleVector.class || klass == K.KFloatVector.class || klass == K.KDatetimeVector.class;
+            boolean wide = klass == K.KLongVector.class || klass == K.KTimestampVector.class || klass == K.KTimespanVector.class;
+            if (s.startsWith("0N") || s.startsWith("0n"))
+                return floating || wide ? Long.MIN_VALUE : klass == K.KShortVector.class ? Short.MIN_VALUE : klass == K.KByteVector.class || klass == K.KBooleanVector.class || klass == K.KCharacterVector.class ? 0 : Integer.MIN_VALUE;
+            if (floating) {
+                double d;
+                if (klass == K.KDatetimeVector.class && s.indexOf('.') != s.lastIndexOf('.'))
+                    d = (days(s.substring(0, 10)) * NS_DAY + (s.length() > 11 ? nanos(s.substring(11)) : 0)) / (double) NS_DAY;
+                else
+                    d = s.equals("0w") || s.equals("0W") ? Double.POSITIVE_INFINITY : s.equals("-0w") || s.equals("-0W") ? Double.NEGATIVE_INFINITY : Double.parseDouble(strip(s));
+                return Sorter.doubleKey(klass == K.KFloatVector.class ? (float) d : d) ^ Long.MIN_VALUE;
+            }
+            if (klass == K.KCharacterVector.class)
+                return s.length() == 1 ? s.charAt(0) : Long.parseLong(s);
+            if (klass == K.KBooleanVector.class)
+                return s.startsWith("1") ? 1 : 0;
+            if (klass == K.KByteVector.class && s.startsWith("0x"))
+                return Long.parseLong(s.substring(2), 16);
+            boolean temporal = s.indexOf(':') >= 0 || s.indexOf('.') >= 0;
+            if (temporal && klass == K.KTimestampVector.class)
+                return s.length() <= 10 ? days(s) * NS_DAY : days(s.substring(0, 10)) * NS_DAY + nanos(s.substring(11));
+            if (temporal && klass == K.KTimespanVector.class) {
+                int d = s.indexOf('D');
+                return (d < 0 ? 0 : Long.parseLong(s.substring(0, d)) * NS_DAY) + nanos(s.substring(d + 1));
+            }
+            if (temporal && klass == K.KDateVector.class)
+                return days(s);
+            if (temporal && klass == K.KMonthVector.class) {
+                String[] f = strip(s).split("\\.");
+                return (Integer.parseInt(f[0]) - 2000) * 12L + Integer.parseInt(f[1]) - 1;
+            }
+            if (temporal && klass == K.KMinuteVector.class)
+                return nanos(s) / 60000000000L;
+            if (temporal && klass == K.KSecondVector.class)
+                return nanos(s) / 1000000000L;
+            if (temporal && klass == K.KTimeVector.class)
+                return nanos(s) / 1000000L;
+            if (s.startsWith("0W") || s.startsWith("0w"))
+                return wide ? Long.MAX_VALUE : klass == K.KShortVector.class ? Short.MAX_VALUE : Integer.MAX_VALUE;
+            if (s.startsWith("-0W") || s.startsWith("-0w"))
+                return wide ? -Long.MAX_VALUE : klass == K.KShortVector.class ? -Short.MAX_VALUE : -Integer.MAX_VALUE;
+            return Long.parseLong(strip(s));
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("Not a value of the column: " + s);
+        }
+    }
+
+    // without a trailing type letter
+    private static String strip(String s) {
+        return s.length() > 1 && Character.isLetter(s.charAt(s.length() - 1)) ? s.substring(0, s.length() - 1) : s;
+    }
+
+    // yyyy.MM.dd as days since 2000.01.01
+    private static long days(String s) {
+        String[] f = s.split("\\.");
+        return LocalDate.of(Integer.parseInt(f[0]), Integer.parseInt(f[1]), Integer.parseInt(f[2])).toEpochDay() - 10957;
+    }
+
+    // HH:mm[:ss[.fffffffff]] as nanoseconds
+    private static long nanos(String s) {
+        String[] f = strip(s).split(":");
+        long ns = Long.parseLong(f[0]) * 3600000000000L + Long.parseLong(f[1]) * 60000000000L;
+        if (f.length > 2) {
+            int dot = f[2].indexOf('.');
+            ns += Long.parseLong(dot < 0 ? f[2] : f[2].substring(0, dot)) * 1000000000L;
+            if (dot >= 0) {
+                String frac = (f[2].substring(dot + 1) + "000000000").substring(0, 9);
+                ns += Long.parseLong(frac);
+            }
+        }
+        return ns;
+    }
+}
@@ -1,263 +1,505 @@
 package studio.kdb;
 
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Stable grades of vectors. Numeric, temporal, char and boolean vectors are graded with a least significant
+ * digit radix sort on keys whose unsigned order is the order of the values, skipping digits all keys share.
+ * Floats and doubles order nulls (NaN) first and -0 with 0, as kdb+ does. Strings, general lists and guids
+ * are graded with a merge sort whose halves run in parallel on the fork join pool. Grading stops with a
+ * CancellationException soon after the calling thread is interrupted.
+ */
 public class Sorter {
-    static public void sort(boolean a[],
-                            int lo,
-                            int hi,
-                            int permutation[],
-                            int scratch[]) {
-        if (lo >= hi)
-            return;
-
-        int mid = (lo + hi) / 2;
-        sort(a,lo,mid,permutation,scratch);
-        sort(a,mid + 1,hi,permutation,scratch);
-
-        int k, t_lo = lo, t_hi = mid + 1;
-
-        for (k = lo;k <= hi;k++)
-            if ((t_lo <= mid) && ((t_hi > hi) || ((a[permutation[t_lo]] ? 1 : 0) <= (a[permutation[t_hi]] ? 1 : 0))))
-                scratch[k] = permutation[t_lo++];
-            else
-                scratch[k] = permutation[t_hi++];
-
-        System.arraycopy(scratch,lo,permutation,lo,1 + hi - lo);
+    // rows per task, below this grading stays on the calling thread
+    private static final int PARALLEL = 1 << 16;
+    // runs this short are insertion sorted
+    private static final int RUN = 32;
+    // bits of the key sorted on per pass
+    private static final int BITS = 11, MASK = (1 << BITS) - 1;
+
+    // compares the values of two rows
+    private interface Order {
+        int compare(int i, int j);
     }
 
-    static public void sort(String a[],
-                            int lo,
-                            int hi,
-                            int permutation[],
-                            int scratch[]) {
-        if (lo >= hi)
-            return;
-
-        int mid = (lo + hi) / 2;
-        sort(a,lo,mid,permutation,scratch);
-        sort(a,mid + 1,hi,permutation,scratch);
-
-        int k, t_lo = lo, t_hi = mid + 1;
-
-        for (k = lo;k <= hi;k++)
-            if ((t_lo <= mid) && ((t_hi > hi) || (a[permutation[t_lo]].compareTo(a[permutation[t_hi]]) <= 0)))
-                scratch[k] = permutation[t_lo++];
-            else
-                scratch[k] = permutation[t_hi++];
-
-        System.arraycopy(scratch,lo,permutation,lo,1 + hi - lo);
+    private static int[] identity(int length) {
+        int[] permutation = new int[length];
+        for (int i = 0; i < length; i++)
+            permutation[i] = i;
+        return permutation;
     }
 
-    static public void sort(char a[],
-                            int lo,
-                            int hi,
-                            int permutation[],
-                            int scratch[]) {
-        if (lo >= hi)
-            return;
-
-        int mid = (lo + hi) / 2;
-        sort(a,lo,mid,permutation,scratch);
-        sort(a,mid + 1,hi,permutation,scratch);
-
-        int k, t_lo = lo, t_hi = mid + 1;
-
-        for (k = lo;k <= hi;k++)
-            if ((t_lo <= mid) && ((t_hi > hi) || (a[permutation[t_lo]] <= a[permutation[t_hi]])))
-                scratch[k] = permutation[t_lo++];
-            else
-                scratch[k] = permutation[t_hi++];
-
-        System.arraycopy(scratch,lo,permutation,lo,1 + hi - lo);
+    static int parts(int length) {
+        return Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), length / PARALLEL));
     }
 
-    static public void sort(byte a[],
-                            int lo,
-                            int hi,
-                            int permutation[],
-                            int scratch[]) {
-        if (lo >= hi)
+    // runs body for each part on the fork join pool
+    static void each(final int parts, final IntConsumer body) {
+        if (parts == 1) {
+            body.accept(0);
             return;
-
-        int mid = (lo + hi) / 2;
-        sort(a,lo,mid,permutation,scratch);
-        sort(a,mid + 1,hi,permutation,scratch);
-
-        int k, t_lo = lo, t_hi = mid + 1;
-
-        for (k = lo;k <= hi;k++)
-            if ((t_lo <= mid) && ((t_hi > hi) || (a[permutation[t_lo]] <= a[permutation[t_hi]])))
-                scratch[k] = permutation[t_lo++];
-            else
-                scratch[k] = permutation[t_hi++];
-
-        System.arraycopy(scratch,lo,permutation,lo,1 + hi - lo);
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            protected void compute() {
+                RecursiveAction[] tasks = new RecursiveAction[parts];
+                for (int i = 0; i < parts; i++) {
+                    final int part = i;
+                    tasks[i] = new RecursiveAction() {
+                        protected void compute() {
+                            body.accept(part);
+                        }
+                    };
+                }
+                invokeAll(tasks);
+            }
+        });
     }
 
-    static public void sort(short a[],
-                            int lo,
-                            int hi,
-                            int permutation[],
-                            int scratch[]) {
-        if (lo >= hi)
-            return;
-
-        int mid = (lo + hi) / 2;
-        sort(a,lo,mid,permutation,scratch);
-        sort(a,mid + 1,hi,permutation,scratch);
+    private static void checkCancelled(Thread caller) {
+        if (caller.isInterrupted())
+            throw new CancellationException("Sort cancelled");
+    }
 
-        int k, t_lo = lo, t_hi = mid + 1;
+    static int floatKey(float x) {
+        if (x != x)
+            return 0;
+        int b = Float.floatToIntBits(x == 0 ? 0f : x);
+        return b < 0 ? ~b : b | Integer.MIN_VALUE;
+    }
 
-        for (k = lo;k <= hi;k++)
-            if ((t_lo <= mid) && ((t_hi > hi) || (a[permutation[t_lo]] <= a[permutation[t_hi]])))
-                scratch[k] = permutation[t_lo++];
-            else
-                scratch[k] = permutation[t_hi++];
+    static long doubleKey(double x) {
+        if (x != x)
+            return 0;
+        long b = Double.doubleToLongBits(x == 0 ? 0d : x);
+        return b < 0 ? ~b : b | Long.MIN_VALUE;
+    }
 
-        System.arraycopy(scratch,lo,permutation,lo,1 + hi - lo);
+    // reorders the rows in permutation stably by keys as unsigned values, keys[i] being that of row
+    // permutation[i], both arrays are reused along the way
+    private static int[] radix(int[] keys, int[] permutation) {
+        int length = permutation.length, diff = 0;
+        for (int i = 1; i < length; i++)
+            diff |= keys[i] ^ keys[0];
+        if (diff == 0)
+            return permutation;
+        int parts = parts(length);
+        int[][] counts = new int[parts][1 << BITS];
+        int[] k = keys, p = permutation, k2 = new int[length], p2 = new int[length];
+        for (int shift = 0; shift < 32; shift += BITS) {
+            if ((diff >>> shift & MASK) == 0)
+                continue;
+            checkCancelled(Thread.currentThread());
+            final int[] fk = k, fp = p, tk = k2, tp = p2;
+            final int s = shift;
+            each(parts, j -> {
+                int[] c = counts[j];
+                Arrays.fill(c, 0);
+                for (int i = from(j, parts, length), e = from(j + 1, parts, length); i < e; i++)
+                    c[fk[i] >>> s & MASK]++;
+            });
+            offsets(counts);
+            each(parts, j -> {
+                int[] c = counts[j];
+                for (int i = from(j, parts, length), e = from(j + 1, parts, length); i < e; i++) {
+                    int at = c[fk[i] >>> s & MASK]++;
+                    tk[at] = fk[i];
+                    tp[at] = fp[i];
+                }
+            });
+            k2 = k;
+            p2 = p;
+            k = tk;
+            p = tp;
+        }
+        return p;
     }
 
-    static public void sort(long a[],
-                            int lo,
-                            int hi,
-                            int permutation[],
-                            int scratch[]) {
-        if (lo >= hi)
-            return;
+    private static int[] radix(long[] keys, int[] permutation) {
+        int length = permutation.length;
+        long diff = 0;
+        for (int i = 1; i < length; i++)
+            diff |= keys[i] ^ keys[0];
+        if (diff == 0)
+            return permutation;
+        int parts = parts(length);
+        int[][] counts = new int[parts][1 << BITS];
+        long[] k = keys, k2 = new long[length];
+        int[] p = permutation, p2 = new int[length];
+        for (int shift = 0; shift < 64; shift += BITS) {
+            if ((diff >>> shift & MASK) == 0)
+                continue;
+            checkCancelled(Thread.currentThread());
+            final long[] fk = k, tk = k2;
+            final int[] fp = p, tp = p2;
+            final int s = shift;
+            each(parts, j -> {
+                int[] c = counts[j];
+                Arrays.fill(c, 0);
+                for (int i = from(j, parts, length), e = from(j + 1, parts, length); i < e; i++)
+                    c[(int) (fk[i] >>> s) & MASK]++;
+            });
+            offsets(counts);
+            each(parts, j -> {
+                int[] c = counts[j];
+                for (int i = from(j, parts, length), e = from(j + 1, parts, length); i < e; i++) {
+                    int at = c[(int) (fk[i] >>> s) & MASK]++;
+                    tk[at] = fk[i];
+                    tp[at] = fp[i];
+                }
+            });
+            k2 = k;
+            p2 = p;
+            k = tk;
+            p = tp;
+        }
+        return p;
+    }
 
-        int mid = (lo + hi) / 2;
-        sort(a,lo,mid,permutation,scratch);
-        sort(a,mid + 1,hi,permutation,scratch);
+    static int from(int part, int parts, int length) {
+        return (int) ((long) length * part / parts);
+    }
 
-        int k, t_lo = lo, t_hi = mid + 1;
+    // turns the digit counts of each part into the positions its rows are scattered to, parts in order
+    private static void offsets(int[][] counts) {
+        int at = 0;
+        for (int d = 0; d < counts[0].length; d++)
+            for (int[] c : counts) {
+                int n = c[d];
+                c[d] = at;
+                at += n;
+            }
+    }
 
-        for (k = lo;k <= hi;k++)
-            if ((t_lo <= mid) && ((t_hi > hi) || (a[permutation[t_lo]] <= a[permutation[t_hi]])))
-                scratch[k] = permutation[t_lo++];
-            else
-                scratch[k] = permutation[t_hi++];
+    private static class MergeSort extends RecursiveAction {
+        private final Thread caller;
+        private final Order order;
+        private final int[] a, b;
+        private final int lo, hi;
+
+        MergeSort(Thread caller, Order order, int[] a, int[] b, int lo, int hi) {
+            this.caller = caller;
+            this.order = order;
+            this.a = a;
+            this.b = b;
+            this.lo = lo;
+            this.hi = hi;
+        }
 
-        System.arraycopy(scratch,lo,permutation,lo,1 + hi - lo);
+        protected void compute() {
+            checkCancelled(caller);
+            if (hi - lo <= PARALLEL) {
+                sort(order, a, b, lo, hi);
+                return;
+            }
+            int mid = lo + hi >>> 1;
+            invokeAll(new MergeSort(caller, order, a, b, lo, mid), new MergeSort(caller, order, a, b, mid, hi));
+            merge(order, a, b, lo, mid, hi);
+        }
     }
 
-    static public void sort(float a[],
-                            int lo,
-                            int hi,
-                            int permutation[],
-                            int scratch[]) {
-        if (lo >= hi)
+    // sorts a[lo, hi) using b[lo, hi) as scratch
+    private static void sort(Order order, int[] a, int[] b, int lo, int hi) {
+        if (hi - lo <= RUN) {
+            for (int i = lo + 1; i < hi; i++) {
+                int x = a[i], j = i;
+                for (; j > lo && order.compare(a[j - 1], x) > 0; j--)
+                    a[j] = a[j - 1];
+                a[j] = x;
+            }
             return;
-
-        int mid = (lo + hi) / 2;
-        sort(a,lo,mid,permutation,scratch);
-        sort(a,mid + 1,hi,permutation,scratch);
-
-        int k, t_lo = lo, t_hi = mid + 1;
-
-        for (k = lo;k <= hi;k++)
-            if ((t_lo <= mid) && ((t_hi > hi) || (Float.isNaN(a[permutation[t_lo]])) || (a[permutation[t_lo]] <= a[permutation[t_hi]])))
-                scratch[k] = permutation[t_lo++];
-            else
-                scratch[k] = permutation[t_hi++];
-
-        System.arraycopy(scratch,lo,permutation,lo,1 + hi - lo);
+        }
+        int mid = lo + hi >>> 1;
+        sort(order, a, b, lo, mid);
+        sort(order, a, b, mid, hi);
+        if (hi - lo > PARALLEL)
+            checkCancelled(Thread.currentThread());
+        merge(order, a, b, lo, mid, hi);
     }
 
-    static public void sort(double a[],
-                            int lo,
-                            int hi,
-                            int permutation[],
-                            int scratch[]) {
-        if (lo >= hi)
+    private static void merge(Order order, int[] a, int[] b, int lo, int mid, int hi) {
+        if (order.compare(a[mid - 1], a[mid]) <= 0)
             return;
+        System.arraycopy(a, lo, b, lo, mid - lo);
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi)
+            a[k++] = order.compare(b[i], a[j]) <= 0 ? b[i++] : a[j++];
+        System.arraycopy(b, i, a, k, mid - i);
+    }
 
-        int mid = (lo + hi) / 2;
-        sort(a,lo,mid,permutation,scratch);
-        sort(a,mid + 1,hi,permutation,scratch);
-
-        int k, t_lo = lo, t_hi = mid + 1;
-
-        for (k = lo;k <= hi;k++)
-            if ((t_lo <= mid) && ((t_hi > hi) || (Double.isNaN(a[permutation[t_lo]])) || (a[permutation[t_lo]] <= a[permutation[t_hi]])))
-                scratch[k] = permutation[t_lo++];
-            else
-                scratch[k] = permutation[t_hi++];
+    // reorders the rows in permutation stably by order
+    private static int[] mergeSort(Order order, int[] permutation) {
+        int length = permutation.length;
+        int[] scratch = new int[length];
+        if (length > PARALLEL && ForkJoinPool.getCommonPoolParallelism() > 1)
+            ForkJoinPool.commonPool().invoke(new MergeSort(Thread.currentThread(), order, permutation, scratch, 0, length));
+        else
+            sort(order, permutation, scratch, 0, length);
+        return permutation;
+    }
 
-        System.arraycopy(scratch,lo,permutation,lo,1 + hi - lo);
+    // grades 128 bit values given as their high and low halves
+    public static int[] gradeUp(final long[] hi, final long[] lo, int length) {
+        return mergeSort((i, j) -> {
+            int c = Long.compareUnsigned(hi[i], hi[j]);
+            return c != 0 ? c : Long.compareUnsigned(lo[i], lo[j]);
+        }, identity(length));
     }
 
-    static public void sort(int a[],
-                            int lo,
-                            int hi,
-                            int permutation[],
-                            int scratch[]) {
-        if (lo >= hi)
-            return;
+    public static int[] gradeUp(Object data, int length) {
+        return grade(data, true, identity(length));
+    }
 
-        int mid = (lo + hi) / 2;
-        sort(a,lo,mid,permutation,scratch);
-        sort(a,mid + 1,hi,permutation,scratch);
+    // a stable grade by several columns of the same length, the first the most significant. The last key
+    // starts from the grade cached on its column
+    public static int[] gradeUp(K.KBaseVector[] columns, boolean[] ascending) {
+        if (columns.length == 0)
+            return new int[0];
+        int last = columns.length - 1;
+        int[] permutation = columns[last].getGrade(ascending[last]);
+        if (last == 0)
+            return permutation;
+        permutation = permutation.clone();
+        for (int k = last - 1; k >= 0; k--) {
+            checkCancelled(Thread.currentThread());
+            permutation = grade(columns[k], ascending[k], permutation);
+        }
+        return permutation;
+    }
 
-        int k, t_lo = lo, t_hi = mid + 1;
+    // the stable descending grade of v from its ascending one, runs of equal values are taken from the end
+    // in their ascending order
+    public static int[] gradeDown(K.KBaseVector v, int[] up) {
+        Order order = order(v);
+        int[] down = new int[up.length];
+        for (int end = up.length, at = 0; end > 0;) {
+            int start = end - 1;
+            while (start > 0 && order.compare(up[start - 1], up[end - 1]) == 0)
+                start--;
+            System.arraycopy(up, start, down, at, end - start);
+            at += end - start;
+            end = start;
+        }
+        return down;
+    }
 
-        for (k = lo;k <= hi;k++)
-            if ((t_lo <= mid) && ((t_hi > hi) || (a[permutation[t_lo]] <= a[permutation[t_hi]])))
-                scratch[k] = permutation[t_lo++];
-            else
-                scratch[k] = permutation[t_hi++];
+    private static int[] grade(K.KBaseVector v, boolean ascending, int[] permutation) {
+        Object data = data(v);
+        if (data == null || data instanceof String[] || data instanceof K.KBase[])
+            return mergeSort(direction(order(v), ascending), permutation);
+        return grade(data, ascending, permutation);
+    }
 
-        System.arraycopy(scratch,lo,permutation,lo,1 + hi - lo);
+    // the array the values of v are graded on, null for guids
+    private static Object data(K.KBaseVector v) {
+        if (v.getVectorClass() == K.KGuidVector.class)
+            return null;
+        int[] ranks = v instanceof K.KSymbolVector ? ((K.KSymbolVector) v).ranks() : null;
+        return ranks != null ? ranks : v.getArray();
     }
 
-    public static int[] gradeUp(Object data,int length) {
-        //int length= Array.getLength(data);
-        int[] scratch = new int[length];
-        int[] permutation = new int[length];
-        for (int i = 0;i < permutation.length;i++)
-            permutation[i] = i;
+    // compares rows of v in the order they are graded in
+    private static Order order(K.KBaseVector v) {
+        Object data = data(v);
+        if (data == null) {
+            final K.KGuidVector guids = (K.KGuidVector) K.KBaseVector.plain(v);
+            return (i, j) -> {
+                int c = Long.compareUnsigned(guids.getMsb(i), guids.getMsb(j));
+                return c != 0 ? c : Long.compareUnsigned(guids.getLsb(i), guids.getLsb(j));
+            };
+        }
+        return order(data);
+    }
 
-        if (data instanceof int[])
-            sort((int[]) data,0,length - 1,permutation,scratch);
-        else if (data instanceof boolean[])
-            sort((boolean[]) data,0,length - 1,permutation,scratch);
-        else if (data instanceof double[])
-            sort((double[]) data,0,length - 1,permutation,scratch);
-        else if (data instanceof float[])
-            sort((float[]) data,0,length - 1,permutation,scratch);
-        else if (data instanceof long[])
-            sort((long[]) data,0,length - 1,permutation,scratch);
-        else if (data instanceof short[])
-            sort((short[]) data,0,length - 1,permutation,scratch);
-        else if (data instanceof char[])
-            sort((char[]) data,0,length - 1,permutation,scratch);
-        else if (data instanceof byte[])
-            sort((byte[]) data,0,length - 1,permutation,scratch);
-        else if (data instanceof String[])
-            sort((String[]) data,0,length - 1,permutation,scratch);
-        else if (data instanceof K.KBase[]) {
-            K.KBase[] generalList = (K.KBase[]) data;
-            String[] list = new String[generalList.length];
-            for (int index = 0; index < generalList.length; index++) {
-                list[index] = generalList[index].toString(false);
-            }
-            sort(list,0, length-1, permutation, scratch);
+    private static Order order(Object data) {
+        if (data instanceof long[]) {
+            final long[] a = (long[]) data;
+            return (i, j) -> Long.compare(a[i], a[j]);
+        }
+        if (data instanceof double[]) {
+            final double[] a = (double[]) data;
+            return (i, j) -> Long.compareUnsigned(doubleKey(a[i]), doubleKey(a[j]));
+        }
+        if (data instanceof int[]) {
+            final int[] a = (int[]) data;
+            return (i, j) -> Integer.compare(a[i], a[j]);
+        }
+        if (data instanceof float[]) {
+            final float[] a = (float[]) data;
+            return (i, j) -> Integer.compareUnsigned(floatKey(a[i]), floatKey(a[j]));
+        }
+        if (data instanceof short[]) {
+            final short[] a = (short[]) data;
+            return (i, j) -> a[i] - a[j];
+        }
+        if (data instanceof byte[]) {
+            final byte[] a = (byte[]) data;
+            return (i, j) -> (a[i] & 0xff) - (a[j] & 0xff);
+        }
+        if (data instanceof char[]) {
+            final char[] a = (char[]) data;
+            return (i, j) -> a[i] - a[j];
+        }
+        if (data instanceof boolean[]) {
+            final boolean[] a = (boolean[]) data;
+            return (i, j) -> Boolean.compare(a[i], a[j]);
+        }
+        if (data instanceof String[]) {
+            final String[] a = (String[]) data;
+            return (i, j) -> a[i].compareTo(a[j]);
         }
+        if (data instanceof K.KBase[]) {
+            final K.KBase[] a = (K.KBase[]) data;
+            // the text of elements without an order of their own, made on first use
+            final String[] text = new String[a.length];
+            return (i, j) -> {
+                if (isText(a[i]) && isText(a[j])) {
+                    if (text[i] == null)
+                        text[i] = a[i].toString(false);
+                    if (text[j] == null)
+                        text[j] = a[j].toString(false);
+                    return text[i].compareTo(text[j]);
+                }
+                return compare(a[i], a[j]);
+            };
+        }
+        return (i, j) -> 0;
+    }
 
-        return permutation;
+    private static boolean isText(K.KBase x) {
+        return x.type >= 0 ? !(x instanceof K.KBaseVector) : x.type < -19;
     }
 
-    public static int[] reverse(int[] a) {
-        int temp;
+    // the elements of strings and chars, null for other values
+    private static char[] chars(K.KBase x) {
+        if (x instanceof K.KCharacterVector)
+            return (char[]) ((K.KCharacterVector) x).getArray();
+        return x instanceof K.KCharacter ? new char[] {((K.KCharacter) x).c} : null;
+    }
 
-        for (int i = 0;i < a.length / 2;i++) {
-            temp = a[i];
-            a[i] = a[a.length - i - 1];
-            a[a.length - i - 1] = temp;
+    // orders K values without formatting them: strings and chars as text, other values by type, atoms before
+    // lists, then by value with nulls first. Lists of one type compare element by element and dictionaries,
+    // tables and functions by their text
+    public static int compare(K.KBase x, K.KBase y) {
+        char[] s = chars(x), t = chars(y);
+        if (s != null && t != null) {
+            int m = x instanceof K.KBaseVector ? ((K.KBaseVector) x).getLength() : 1;
+            int n = y instanceof K.KBaseVector ? ((K.KBaseVector) y).getLength() : 1;
+            for (int i = 0, k = Math.min(m, n); i < k; i++)
+                if (s[i] != t[i])
+                    return s[i] - t[i];
+            return Integer.compare(m, n);
+        }
+        // chars sort with strings
+        if (x.type != y.type)
+            return Integer.compare(s != null ? 10 : x.type, t != null ? 10 : y.type);
+        switch (x.type) {
+            case -1:
+                return Boolean.compare(((K.KBoolean) x).b, ((K.KBoolean) y).b);
+            case -2: {
+                java.util.UUID u = ((K.KGuid) x).uuid, v = ((K.KGuid) y).uuid;
+                int c = Long.compareUnsigned(u.getMostSignificantBits(), v.getMostSignificantBits());
+                return c != 0 ? c : Long.compareUnsigned(u.getLeastSignificantBits(), v.getLeastSignificantBits());
+            }
+            case -4:
+                return Integer.compare(((K.KByte) x).b & 0xff, ((K.KByte) y).b & 0xff);
+            case -5:
+                return Integer.compare(((K.KShort) x).s, ((K.KShort) y).s);
+            case -6:
+                return Integer.compare(((K.KInteger) x).i, ((K.KInteger) y).i);
+            case -7:
+                return Long.compare(((K.KLong) x).j, ((K.KLong) y).j);
+            case -8:
+                return Integer.compareUnsigned(floatKey(((K.KFloat) x).f), floatKey(((K.KFloat) y).f));
+            case -9:
+                return Long.compareUnsigned(doubleKey(((K.KDouble) x).d), doubleKey(((K.KDouble) y).d));
+            case -11:
+                return ((K.KSymbol) x).s.compareTo(((K.KSymbol) y).s);
+            case -12:
+                return Long.compare(((K.KTimestamp) x).time, ((K.KTimestamp) y).time);
+            case -13:
+                return Integer.compare(((K.Month) x).i, ((K.Month) y).i);
+            case -14:
+                return Integer.compare(((K.KDate) x).date, ((K.KDate) y).date);
+            case -15:
+                return Long.compareUnsigned(doubleKey(((K.KDatetime) x).time), doubleKey(((K.KDatetime) y).time));
+            case -16:
+                return Long.compare(((K.KTimespan) x).j, ((K.KTimespan) y).j);
+            case -17:
+                return Integer.compare(((K.Minute) x).i, ((K.Minute) y).i);
+            case -18:
+                return Integer.compare(((K.Second) x).i, ((K.Second) y).i);
+            case -19:
+                return Integer.compare(((K.KTime) x).time, ((K.KTime) y).time);
+        }
+        if (isText(x))
+            return x.toString(false).compareTo(y.toString(false));
+        K.KBaseVector v = (K.KBaseVector) x, w = (K.KBaseVector) y;
+        int n = Math.min(v.getLength(), w.getLength());
+        for (int i = 0; i < n; i++) {
+            int c = compare(v.at(i), w.at(i));
+            if (c != 0)
+                return c;
         }
+        return Integer.compare(v.getLength(), w.getLength());
+    }
 
-        return a;
+    private static Order direction(final Order order, boolean ascending) {
+        return ascending ? order : (i, j) -> order.compare(j, i);
     }
 
-    public static int[] gradeDown(Object data,int length) {
-        return reverse(gradeUp(data,length));
+    // reorders the rows in permutation stably by their values in data, a descending grade takes the
+    // complement of the keys so equal values keep their order
+    private static int[] grade(Object data, boolean ascending, int[] permutation) {
+        int length = permutation.length;
+        int[] p = permutation;
+        if (data instanceof long[] || data instanceof double[]) {
+            long[] keys = new long[length];
+            long flip = ascending ? 0 : -1;
+            if (data instanceof long[]) {
+                long[] a = (long[]) data;
+                for (int i = 0; i < length; i++)
+                    keys[i] = a[p[i]] ^ Long.MIN_VALUE ^ flip;
+            } else {
+                double[] a = (double[]) data;
+                for (int i = 0; i < length; i++)
+                    keys[i] = doubleKey(a[p[i]]) ^ flip;
+            }
+            return radix(keys, p);
+        }
+        if (data instanceof String[] || data instanceof K.KBase[])
+            return mergeSort(direction(order(data), ascending), p);
+        int[] keys = new int[length];
+        int flip = ascending ? 0 : -1;
+        if (data instanceof int[]) {
+            int[] a = (int[]) data;
+            for (int i = 0; i < length; i++)
+                keys[i] = a[p[i]] ^ Integer.MIN_VALUE ^ flip;
+        } else if (data instanceof float[]) {
+            float[] a = (float[]) data;
+            for (int i = 0; i < length; i++)
+                keys[i] = floatKey(a[p[i]]) ^ flip;
+        } else if (data instanceof short[]) {
+            short[] a = (short[]) data;
+            for (int i = 0; i < length; i++)
+                keys[i] = a[p[i]] - Short.MIN_VALUE ^ flip;
+        } else if (data instanceof byte[]) {
+            byte[] a = (byte[]) data;
+            for (int i = 0; i < length; i++)
+                keys[i] = a[p[i]] & 0xff ^ flip;
+        } else if (data instanceof char[]) {
+            char[] a = (char[]) data;
+            for (int i = 0; i < length; i++)
+                keys[i] = a[p[i]] ^ flip;
+        } else if (data instanceof boolean[]) {
+            boolean[] a = (boolean[]) data;
+            for (int i = 0; i < length; i++)
+                keys[i] = (a[p[i]] ? 1 : 0) ^ flip;
+        } else
+            return p;
+        return radix(keys, p);
     }
 }
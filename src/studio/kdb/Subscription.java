@@ -0,0 +1,215 @@
+package studio.kdb;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Delivers async messages pushed by a server to listeners on a dispatcher thread. The connection's reader
+ * thread offers messages to a bounded single producer, single consumer ring so it never waits on a slow
+ * listener. When the ring is full messages are either dropped or coalesced: (`upd;`t;data) messages for the
+ * same table are merged into one of at most the live table capacity rows, other messages keep only the latest.
+ */
+public class Subscription {
+    public enum Policy {DROP, COALESCE}
+
+    private final K.KBase[] ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+    // messages that arrived while the ring was full, only the reader thread puts a map back
+    private final AtomicReference<Map<Object,Pending>> overflow = new AtomicReference<>();
+    private final Policy policy;
+    private final int maxRows;
+    private final List<Consumer<K.KBase>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong received = new AtomicLong(), dropped = new AtomicLong();
+    private final Thread dispatcher;
+    private volatile boolean waiting, closed;
+    private kx.c connection;
+
+    public Subscription(int capacity, Policy policy) {
+        int n = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        ring = new K.KBase[n];
+        mask = n - 1;
+        this.policy = policy;
+        maxRows = Config.getInstance().getLiveTableCapacity();
+        dispatcher = new Thread(this::dispatch, "SubscriptionDispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public Subscription() {
+        this(Config.getInstance().getSubscriptionQueueSize(), Config.getInstance().getSubscriptionPolicy());
+    }
+
+    public void addListener(Consumer<K.KBase> l) {
+        listeners.add(l);
+    }
+
+    public void removeListener(Consumer<K.KBase> l) {
+        listeners.remove(l);
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // sends the subscription request x on c, async messages on c are routed here from then on
+    public K.KBase subscribe(kx.c c, K.KBase x) throws Throwable {
+        connection = c;
+        c.setSubscription(this);
+        c.k(x);
+        return c.getResponse();
+    }
+
+    public void close() {
+        closed = true;
+        if (connection != null)
+            connection.close();
+        LockSupport.unpark(dispatcher);
+    }
+
+    // called on the connection's reader thread only
+    public void offer(K.KBase x) {
+        received.incrementAndGet();
+        long t = tail.get();
+        if (overflow.get() == null && t - head.get() < ring.length) {
+            ring[(int) t & mask] = x;
+            tail.lazySet(t + 1);
+        } else if (policy == Policy.DROP)
+            dropped.incrementAndGet();
+        else {
+            Map<Object,Pending> m = overflow.getAndSet(null);
+            if (m == null)
+                m = new LinkedHashMap<>();
+            coalesce(m, x);
+            overflow.set(m);
+        }
+        if (waiting)
+            LockSupport.unpark(dispatcher);
+    }
+
+    // a message waiting in the overflow and how many were merged into it
+    private static class Pending {
+        final K.KBase x;
+        int messages = 1;
+
+        Pending(K.KBase x) {
+            this.x = x;
+        }
+    }
+
+    // once merging would pass maxRows the pending rows are dropped for the newer message
+    private void coalesce(Map<Object,Pending> m, K.KBase x) {
+        Object key = Subscription.class;
+        if (x instanceof K.KList && ((K.KList) x).getLength() == 3) {
+            K.KBase[] a = (K.KBase[]) ((K.KList) x).getArray();
+            if (a[1] instanceof K.KSymbol) {
+                key = ((K.KSymbol) a[1]).s;
+                Pending prev = m.get(key);
+                if (prev != null) {
+                    K.KBase data = ((K.KBase[]) ((K.KList) prev.x).getArray())[2];
+                    if ((long) rows(data) + rows(a[2]) <= maxRows && append(data, a[2])) {
+                        prev.messages++;
+                        return;
+                    }
+                }
+            }
+        }
+        Pending prev = m.put(key, new Pending(x));
+        if (prev != null)
+            dropped.addAndGet(prev.messages);
+    }
+
+    private static int rows(K.KBase x) {
+        if (x instanceof K.Dict)
+            return rows(((K.Dict) x).x);
+        if (x instanceof K.Flip)
+            return ((K.Flip) x).y.getLength() == 0 ? 0 : ((K.KBaseVector) ((K.Flip) x).y.at(0)).getLength();
+        if (x instanceof K.KList && ((K.KList) x).getLength() > 0 && ((K.KList) x).at(0) instanceof K.KBaseVector)
+            return ((K.KBaseVector) ((K.KList) x).at(0)).getLength();
+        return 0;
+    }
+
+    // appends the rows of y to the pending data x when both have the same shape, keyed tables are upserted
+    private static boolean append(K.KBase x, K.KBase y) {
+        if (x instanceof K.Dict && y instanceof K.Dict)
+            return ((K.Dict) x).upsert((K.Dict) y);
+        if (x instanceof K.Flip && y instanceof K.Flip) {
+            K.Flip a = (K.Flip) x, b = (K.Flip) y;
+            if (a.y.getLength() != b.y.getLength())
+                return false;
+            for (int i = 0; i < a.y.getLength(); i++)
+                if (((K.KBaseVector) a.y.at(i)).getVectorClass() != ((K.KBaseVector) b.y.at(i)).getVectorClass())
+                    return false;
+            a.append(b);
+            return true;
+        }
+        if (x instanceof K.KList && y instanceof K.KList) {
+            K.KList a = (K.KList) x, b = (K.KList) y;
+            if (a.getLength() != b.getLength())
+                return false;
+            for (int i = 0; i < a.getLength(); i++)
+                if (!(a.at(i) instanceof K.KBaseVector) || !(b.at(i) instanceof K.KBaseVector)
+                        || ((K.KBaseVector) a.at(i)).getVectorClass() != ((K.KBaseVector) b.at(i)).getVectorClass())
+                    return false;
+            for (int i = 0; i < a.getLength(); i++) {
+                if (a.at(i) instanceof K.KPagedVector)
+                    ((K.KBase[]) a.getArray())[i] = ((K.KPagedVector) a.at(i)).flatten();
+                ((K.KBaseVector) a.at(i)).append((K.KBaseVector) b.at(i));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            long h = head.get();
+            if (h < tail.get()) {
+                K.KBase x = ring[(int) h & mask];
+                ring[(int) h & mask] = null;
+                head.lazySet(h + 1);
+                deliver(x);
+                continue;
+            }
+            Map<Object,Pending> m = overflow.getAndSet(null);
+            if (m != null) {
+                for (Pending p : m.values())
+                    deliver(p.x);
+                continue;
+            }
+            waiting = true;
+            if (head.get() == tail.get() && overflow.get() == null && !closed)
+                LockSupport.parkNanos(this, 100_000_000L);
+            waiting = false;
+        }
+    }
+
+    private void deliver(K.KBase x) {
+        for (Consumer<K.KBase> l : listeners)
+            try {
+                l.accept(x);
+            }
+            catch (Throwable t) {
+                System.err.println("Error in subscription listener: " + t);
+                t.printStackTrace(System.err);
+            }
+    }
+}
@@ -7,10 +7,21 @@ import studio.ui.Util;
 import java.awt.Component;
 import java.awt.Font;
 import java.awt.Insets;
+import java.awt.event.MouseEvent;
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.JTableHeader;
 
 public class TableHeaderRenderer extends DefaultTableCellRenderer {
+    // the column last rendered, the header asks for its tooltip right after rendering it
+    private KTableModel model;
+    private int column;
+    private int rank;
+    private boolean sorting;
+    private JTableHeader header;
+    // the column whose statistics the worker is computing
+    private K.KBaseVector computing;
+
     public TableHeaderRenderer() {
         super();
         setHorizontalAlignment(SwingConstants.LEFT);
@@ -25,6 +36,35 @@ public class TableHeaderRenderer extends DefaultTableCellRenderer {
         setForeground(UIManager.getColor("TableHeader.foreground"));
     }
 
+    // the column statistics, only computed when the pointer rests on the header and then on the table worker
+    public String getToolTipText(MouseEvent e) {
+        if (model == null || column < 0 || column >= model.getColumnCount())
+            return null;
+        K.KBaseVector v = model.getColumn(column);
+        ColumnStats s = v.cachedStats();
+        StringBuilder sb = new StringBuilder("<html><b>").append(model.getColumnName(column)).append("</b> ").append(v.getDataType());
+        if (s == null) {
+            if (computing != v) {
+                computing = v;
+                final JTableHeader h = header;
+                final int x = e.getX(), y = e.getY();
+                model.statsInBackground(column, () -> {
+                    computing = null;
+                    // a tooltip showing is only refreshed when the pointer moves
+                    if (h != null && h.isShowing())
+                        ToolTipManager.sharedInstance().mouseMoved(new MouseEvent(h, MouseEvent.MOUSE_MOVED, System.currentTimeMillis(), 0, x, y, 0, false));
+                });
+            }
+            return sb.append("<br>computing\u2026</html>").toString();
+        }
+        sb.append("<br>count ").append(s.getCount()).append(", nulls ").append(s.getNullCount()).append(", distinct ~").append(s.getDistinct());
+        if (s.getMin() != null)
+            sb.append("<br>min ").append(s.getMin().toString(true)).append(", max ").append(s.getMax().toString(true));
+        if (s.isNumeric() && s.getCount() > s.getNullCount())
+            sb.append("<br>sum ").append(new K.KDouble(s.getSum()).toString(false)).append(", mean ").append(new K.KDouble(s.getMean()).toString(false));
+        return sb.append("</html>").toString();
+    }
+
     public void setFont(Font f) {
         super.setFont(f);
         invalidate();
@@ -45,15 +85,18 @@ public class TableHeaderRenderer extends DefaultTableCellRenderer {
             Insets insets = getInsets();
             int targetHeight = getFontMetrics(getFont()).getHeight() - insets.bottom - insets.top;
             KTableModel ktm = (KTableModel) table.getModel();
-            if (ktm.isSortedDesc()) {
-                if (column == ktm.getSortByColumn())
+            model = ktm;
+            header = table.getTableHeader();
+            this.column = column;
+            rank = ktm.getSortKeyCount() > 1 ? ktm.getSortRank(column) : -1;
+            sorting = ktm.isSorting() && ktm.getSortRank(column) >= 0;
+            if (ktm.getSortRank(column) >= 0)
+                if (!ktm.isSortedAsc(column))
                     if (ktm.getColumnClass(column) == K.KSymbolVector.class)
                         icon = new ScaledIcon(Util.SORT_AZ_ASC_ICON,targetHeight);
                     else
                         icon = new ScaledIcon(Util.SORT_DESC_ICON,targetHeight);
-            }
-            else if (ktm.isSortedAsc())
-                if (column == ktm.getSortByColumn())
+                else
                     if (ktm.getColumnClass(column) == K.KSymbolVector.class)
                         icon = new ScaledIcon(Util.SORT_AZ_DESC_ICON,targetHeight);
                     else
@@ -65,10 +108,21 @@ public class TableHeaderRenderer extends DefaultTableCellRenderer {
                 setIcon(new BlankIcon(icon));
             }
         }
+        else {
+            model = null;
+            rank = -1;
+            sorting = false;
+        }
 
         String text = " ";
         if (value != null)
             text = value.toString() + " ";
+        // the order of the keys of a multi column sort
+        if (rank >= 0)
+            text += (rank + 1) + " ";
+        // the rows are still in the old order
+        if (sorting)
+            text += "\u2026 ";
 
         setText(text);
 
@@ -98,6 +98,14 @@ public class TableRowHeader extends JList {
     }
      **/
     class TableListModel extends AbstractListModel {
+        TableListModel() {
+            // the row count of live models changes after the header is made
+            table.getModel().addTableModelListener(e -> {
+                recalcWidth();
+                fireContentsChanged(this, 0, getSize() - 1);
+            });
+        }
+
         public int getSize() {
             return table.getRowCount();
         }
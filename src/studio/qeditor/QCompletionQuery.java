@@ -47,17 +47,11 @@ public class QCompletionQuery implements CompletionQuery
                          text= t.nextToken();
                      }
 
-                     kx.c c= null;
-
                      try
                      {
-                         c=ConnectionPool.getInstance().leaseConnection(s);
-                         ConnectionPool.getInstance().checkConnected(c);
-
                          if(text.endsWith("."))
                          {
-                             c.k(new K.KCharacterVector("cols "+text.substring(0,text.length()-1)));
-                             Object res = c.getResponse();
+                             Object res = ConnectionPool.getInstance().submit(s, new K.KCharacterVector("cols "+text.substring(0,text.length()-1))).get();
                              if( res instanceof K.KSymbolVector)
                              {
                                   K.KSymbolVector tables= (K.KSymbolVector)res;
@@ -74,8 +68,7 @@ public class QCompletionQuery implements CompletionQuery
                          }
                          else
                          {
-                             c.k(new K.KCharacterVector("tables[]"));
-                             Object res = c.getResponse();
+                             Object res = ConnectionPool.getInstance().submit(s, new K.KCharacterVector("tables[]")).get();
                              if( res instanceof K.KSymbolVector)
                              {
                                   K.KSymbolVector tables= (K.KSymbolVector)res;
@@ -94,11 +87,6 @@ public class QCompletionQuery implements CompletionQuery
                      catch (Throwable th)
                      {
                      }
-                     finally
-                     {
-                         if(c != null)
-                             ConnectionPool.getInstance().freeConnection(s,c);
-                     }
                  }
              }
          }
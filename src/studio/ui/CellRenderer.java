@@ -19,6 +19,7 @@ class CellRenderer extends DefaultTableCellRenderer {
     private static Color selColor = UIManager.getColor("Table.selectionBackground");
     private Color fgColor;
     private JTable table = null;
+    private final LimitedWriter w = new LimitedWriter(0);
 
     private void initLabel(JTable table) {
         setHorizontalAlignment(SwingConstants.LEFT);
@@ -58,7 +59,7 @@ class CellRenderer extends DefaultTableCellRenderer {
 
         if (value instanceof K.KBase) {
             K.KBase kb = (K.KBase) value;
-            LimitedWriter w = new LimitedWriter(Config.getInstance().getMaxCharsInTableCell());
+            w.reset(Config.getInstance().getMaxCharsInTableCell());
 
             try {
                 kb.toString(w,kb instanceof K.KBaseVector);
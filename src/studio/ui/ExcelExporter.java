@@ -8,7 +8,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.text.CharacterIterator;
-import java.text.SimpleDateFormat;
 import java.text.StringCharacterIterator;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
@@ -18,6 +17,8 @@ import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.table.TableModel;
 import studio.kdb.Config;
+import studio.kdb.KFormat;
+import studio.kdb.KTableModel;
 
 class ExcelExporter {
     /*   public void exportTable1(JTable table, File file) throws IOException {
@@ -45,13 +46,6 @@ class ExcelExporter {
     }
      */
 
-    private static SimpleDateFormat formatter = new SimpleDateFormat();
-
-    private static synchronized String sd(String s, java.util.Date x) {
-        formatter.applyPattern(s);
-        return formatter.format(x);
-    }
-
     public static String escape(String s) {
         final StringBuffer result = new StringBuffer();
         final StringCharacterIterator iterator = new StringCharacterIterator(s);
@@ -77,7 +71,7 @@ class ExcelExporter {
 
     public void exportTableX(final JFrame frame, final JTable table, final File file, final boolean openIt) {
 
-        final TableModel model = table.getModel();
+        final KTableModel model = (KTableModel) table.getModel();
         final String message = "Exporting data to " + file.getAbsolutePath();
         final String note = "0% complete";
         String title = "Studio for kdb+";
@@ -129,49 +123,55 @@ class ExcelExporter {
 
                     int maxRow = model.getRowCount();
                     int lastProgress = 0;
+                    Class<?>[] klass = new Class<?>[model.getColumnCount()];
+                    K.Cursor[] cursors = new K.Cursor[model.getColumnCount()];
+                    for (int j = 0; j < model.getColumnCount(); j++) {
+                        klass[j] = model.getColumnClass(j);
+                        cursors[j] = model.cursor(j);
+                    }
                     for (int i = 0; i < model.getRowCount(); i++) {
                         writer.write("<ss:Row>");
 
                         for (int j = 0; j < model.getColumnCount(); j++) {
 
-                            K.KBase b = (K.KBase) model.getValueAt(i, j);
-                            if (!b.isNull()) {
-                                if (table.getColumnClass(j) == K.KSymbolVector.class) {
-                                    writer.write("<ss:Cell><ss:Data ss:Type=\"String\">" + escape(b.toString(false)));
-                                } else if (table.getColumnClass(j) == K.KDateVector.class) {
-                                    writer.write("<ss:Cell ss:StyleID=\"date\"><ss:Data ss:Type=\"DateTime\">" +
-                                            sd("yyyy-MM-dd", ((K.KDate) b).toDate()));
-                                } else if (table.getColumnClass(j) == K.KTimeVector.class) {
-                                    writer.write("<ss:Cell ss:StyleID=\"time\"><ss:Data ss:Type=\"DateTime\">" +
-                                            "1899-12-31T" + sd("HH:mm:ss.SSS", ((K.KTime) b).toTime()));
-                                } else if (table.getColumnClass(j) == K.KTimestampVector.class) {
-                                    char[] cs = sd("yyyy-MM-dd HH:mm:ss.SSS", ((K.KTimestamp) b).toTimestamp()).toCharArray();
-                                    cs[10] = 'T';
-                                    writer.write("<ss:Cell ss:StyleID=\"datetime\"><ss:Data ss:Type=\"DateTime\">" + new String(cs));
-                                } else if (table.getColumnClass(j) == K.KMonthVector.class) {
-                                    writer.write("<ss:Cell ss:StyleID=\"month\"><ss:Data ss:Type=\"DateTime\">" + sd("yyyy-MM", ((K.Month) b).toDate()));
-                                } else if (table.getColumnClass(j) == K.KMinuteVector.class) {
-                                    writer.write("<ss:Cell ss:StyleID=\"minute\"><ss:Data ss:Type=\"DateTime\">" +
-                                            "1899-12-31T" + sd("HH:mm", ((K.Minute) b).toDate()));
-                                } else if (table.getColumnClass(j) == K.KSecondVector.class) {
-                                    writer.write("<ss:Cell ss:StyleID=\"second\"><ss:Data ss:Type=\"DateTime\">" +
-                                            "1899-12-31T" + sd("HH:mm:ss", ((K.Second) b).toDate()));
-                                } else if (table.getColumnClass(j) == K.KBooleanVector.class) {
-                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Boolean\">" + (((K.KBoolean) b).b ? "1" : "0"));
-                                } else if (table.getColumnClass(j) == K.KDoubleVector.class) {
-                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + ((K.KDouble) b).d);
-                                } else if (table.getColumnClass(j) == K.KFloatVector.class) {
-                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + ((K.KFloat) b).f);
-                                } else if (table.getColumnClass(j) == K.KLongVector.class) {
-                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + ((K.KLong) b).j);
-                                } else if (table.getColumnClass(j) == K.KIntVector.class) {
-                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + ((K.KInteger) b).i);
-                                } else if (table.getColumnClass(j) == K.KShortVector.class) {
-                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + ((K.KShort) b).s);
-                                } else if (table.getColumnClass(j) == K.KCharacterVector.class) {
-                                    writer.write("<ss:Cell><ss:Data ss:Type=\"String\">" + escape(new String(new char[]{((K.KCharacter) b).c})));
+                            K.Cursor c = cursors[j].seek(i);
+                            if (!c.isNull()) {
+                                if (klass[j] == K.KSymbolVector.class) {
+                                    writer.write("<ss:Cell><ss:Data ss:Type=\"String\">" + escape(c.get().toString(false)));
+                                } else if (klass[j] == K.KDateVector.class) {
+                                    writer.write("<ss:Cell ss:StyleID=\"date\"><ss:Data ss:Type=\"DateTime\">");
+                                    KFormat.get().isoDate(c.getInt()).writeTo(writer);
+                                } else if (klass[j] == K.KTimeVector.class) {
+                                    writer.write("<ss:Cell ss:StyleID=\"time\"><ss:Data ss:Type=\"DateTime\">1899-12-31T");
+                                    KFormat.get().time(c.getInt()).writeTo(writer);
+                                } else if (klass[j] == K.KTimestampVector.class) {
+                                    writer.write("<ss:Cell ss:StyleID=\"datetime\"><ss:Data ss:Type=\"DateTime\">");
+                                    KFormat.get().isoTimestamp(c.getLong()).writeTo(writer);
+                                } else if (klass[j] == K.KMonthVector.class) {
+                                    writer.write("<ss:Cell ss:StyleID=\"month\"><ss:Data ss:Type=\"DateTime\">");
+                                    KFormat.get().isoMonth(c.getInt()).writeTo(writer);
+                                } else if (klass[j] == K.KMinuteVector.class) {
+                                    writer.write("<ss:Cell ss:StyleID=\"minute\"><ss:Data ss:Type=\"DateTime\">1899-12-31T");
+                                    KFormat.get().minute(c.getInt()).writeTo(writer);
+                                } else if (klass[j] == K.KSecondVector.class) {
+                                    writer.write("<ss:Cell ss:StyleID=\"second\"><ss:Data ss:Type=\"DateTime\">1899-12-31T");
+                                    KFormat.get().second(c.getInt()).writeTo(writer);
+                                } else if (klass[j] == K.KBooleanVector.class) {
+                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Boolean\">" + c.getLong());
+                                } else if (klass[j] == K.KDoubleVector.class) {
+                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + c.getDouble());
+                                } else if (klass[j] == K.KFloatVector.class) {
+                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + (float) c.getDouble());
+                                } else if (klass[j] == K.KLongVector.class) {
+                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + c.getLong());
+                                } else if (klass[j] == K.KIntVector.class) {
+                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + c.getInt());
+                                } else if (klass[j] == K.KShortVector.class) {
+                                    writer.write("<ss:Cell><ss:Data ss:Type=\"Number\">" + c.getInt());
+                                } else if (klass[j] == K.KCharacterVector.class) {
+                                    writer.write("<ss:Cell><ss:Data ss:Type=\"String\">" + escape(String.valueOf((char) c.getInt())));
                                 } else {
-                                    writer.write("<ss:Cell><ss:Data ss:Type=\"String\">" + escape(K.decode(b, false)));
+                                    writer.write("<ss:Cell><ss:Data ss:Type=\"String\">" + escape(K.decode(c.get(), false)));
                                 }
                             } else {
                                 writer.write("<ss:Cell><ss:Data ss:Type=\"String\">");
@@ -14,7 +14,6 @@ import org.jfree.data.xy.XYSeriesCollection;
 import studio.kdb.Config;
 import studio.kdb.K;
 import studio.kdb.KTableModel;
-import studio.kdb.ToDouble;
 
 import javax.swing.*;
 import java.util.TimeZone;
@@ -87,6 +86,7 @@ public class LineChart {
 
                 for (int col = 1; col < table.getColumnCount(); col++) {
                     TimeSeries series = null;
+                    K.Cursor y = numeric(table, col);
 
                     try {
                         if (klass == K.KDateVector.class) {
@@ -96,7 +96,7 @@ public class LineChart {
                             for (int row = 0; row < dates.getLength(); row++) {
                                 K.KDate date = (K.KDate) dates.at(row);
                                 Day day = new Day(date.toDate(), tz);
-                                addOrUpdate(table, series, row, col, day);
+                                addOrUpdate(y, series, row, day);
                             }
                         } else if (klass == K.KTimeVector.class) {
                             series = new TimeSeries(table.getColumnName(col), Millisecond.class);
@@ -105,7 +105,7 @@ public class LineChart {
                             for (int row = 0; row < table.getRowCount(); row++) {
                                 K.KTime time = (K.KTime) times.at(row);
                                 Millisecond ms = new Millisecond(time.toTime(), tz);
-                                addOrUpdate(table, series, row, col, ms);
+                                addOrUpdate(y, series, row, ms);
                             }
                         } else if (klass == K.KTimestampVector.class) {
                             series = new TimeSeries(table.getColumnName(col), Millisecond.class);
@@ -114,7 +114,7 @@ public class LineChart {
                             for (int row = 0; row < dates.getLength(); row++) {
                                 K.KTimestamp date = (K.KTimestamp) dates.at(row);
                                 Millisecond day = new Millisecond(new java.util.Date(date.toTimestamp().getTime()), tz);
-                                addOrUpdate(table, series, row, col, day);
+                                addOrUpdate(y, series, row, day);
                             }
                         } else if (klass == K.KTimespanVector.class) {
                             series = new TimeSeries(table.getColumnName(col), Millisecond.class);
@@ -123,7 +123,7 @@ public class LineChart {
                             for (int row = 0; row < table.getRowCount(); row++) {
                                 K.KTimespan time = (K.KTimespan) times.at(row);
                                 Millisecond ms = new Millisecond(time.toTime(), tz);
-                                addOrUpdate(table, series, row, col, ms);
+                                addOrUpdate(y, series, row, ms);
                             }
                         } else if (klass == K.KDatetimeVector.class) {
                             series = new TimeSeries(table.getColumnName(col), Millisecond.class);
@@ -132,34 +132,33 @@ public class LineChart {
                             for (int row = 0; row < table.getRowCount(); row++) {
                                 K.KDatetime time = (K.KDatetime) times.at(row);
                                 Millisecond ms = new Millisecond(time.toTimestamp(), tz);
-                                addOrUpdate(table, series, row, col, ms);
+                                addOrUpdate(y, series, row, ms);
                             }
                         } else if (klass == K.KMonthVector.class) {
                             series = new TimeSeries(table.getColumnName(col), Month.class);
                             K.KMonthVector times = (K.KMonthVector) table.getColumn(0);
                             for (int row = 0; row < table.getRowCount(); row++) {
-                                K.Month time = (K.Month) times.at(row);
-                                int m = time.i + 24000;
-                                int y = m / 12;
+                                int m = times.getInt(row) + 24000;
+                                int year = m / 12;
                                 m = 1 + m % 12;
-                                Month month = new Month(m, y);
-                                addOrUpdate(table, series, row, col, month);
+                                Month month = new Month(m, year);
+                                addOrUpdate(y, series, row, month);
                             }
                         } else if (klass == K.KSecondVector.class) {
                             series = new TimeSeries(table.getColumnName(col), Second.class);
                             K.KSecondVector times = (K.KSecondVector) table.getColumn(0);
                             for (int row = 0; row < table.getRowCount(); row++) {
-                                K.Second time = (K.Second) times.at(row);
-                                Second second = new Second(time.i % 60, time.i / 60, 0, 1, 1, 2001);
-                                addOrUpdate(table, series, row, col, second);
+                                int time = times.getInt(row);
+                                Second second = new Second(time % 60, time / 60, 0, 1, 1, 2001);
+                                addOrUpdate(y, series, row, second);
                             }
                         } else if (klass == K.KMinuteVector.class) {
                             series = new TimeSeries(table.getColumnName(col), Minute.class);
                             K.KMinuteVector times = (K.KMinuteVector) table.getColumn(0);
                             for (int row = 0; row < table.getRowCount(); row++) {
-                                K.Minute time = (K.Minute) times.at(row);
-                                Minute minute = new Minute(time.i % 60, time.i / 60, 1, 1, 2001);
-                                addOrUpdate(table, series, row, col, minute);
+                                int time = times.getInt(row);
+                                Minute minute = new Minute(time % 60, time / 60, 1, 1, 2001);
+                                addOrUpdate(y, series, row, minute);
                             }
                         }
                     } catch (SeriesException e) {
@@ -180,12 +179,10 @@ public class LineChart {
 
                     try {
                         series = new XYSeries(table.getColumnName(col));
+                        K.Cursor x = table.cursor(0), y = table.cursor(col);
 
-                        for (int row = 0; row < table.getRowCount(); row++) {
-                            double x = ((ToDouble) table.getValueAt(row, 0)).toDouble();
-                            double y = ((ToDouble) table.getValueAt(row, col)).toDouble();
-                            series.add(x, y);
-                        }
+                        for (int row = 0; row < table.getRowCount(); row++)
+                            series.add(x.seek(row).getDouble(), y.seek(row).getDouble());
                     } catch (SeriesException e) {
                         System.err.println("Error adding to series");
                     }
@@ -226,15 +223,17 @@ public class LineChart {
         return null;
     }
 
-    private static void addOrUpdate(KTableModel table, TimeSeries series, int row, int col, RegularTimePeriod timePeriod) {
-        Object o = table.getValueAt(row, col);
-        if (o instanceof K.KBase) {
-            if (!((K.KBase) o).isNull()) {
-                if (o instanceof ToDouble) {
-                    series.addOrUpdate(timePeriod, ((ToDouble) o).toDouble());
-                }
-            }
-        }
+    private static void addOrUpdate(K.Cursor y, TimeSeries series, int row, RegularTimePeriod timePeriod) {
+        if (y != null && !y.seek(row).isNull())
+            series.addOrUpdate(timePeriod, y.getDouble());
+    }
+
+    // an unsorted cursor, matching the time column, if the column is numeric, null otherwise
+    private static K.Cursor numeric(KTableModel table, int col) {
+        Class<?> klass = table.getColumnClass(col);
+        if ((klass == K.KDoubleVector.class) || (klass == K.KFloatVector.class) || (klass == K.KShortVector.class) || (klass == K.KIntVector.class) || (klass == K.KLongVector.class) || (klass == K.KByteVector.class) || (klass == K.KBooleanVector.class))
+            return new K.Cursor(table.getColumn(col));
+        return null;
     }
 }
 
@@ -2,12 +2,16 @@ package studio.ui;
 
 import studio.kdb.Config;
 import studio.kdb.K;
+import studio.kdb.KTableModel;
+import studio.kdb.RowFilter;
 import studio.kdb.TableHeaderRenderer;
 import studio.kdb.TableRowHeader;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.*;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
@@ -141,7 +145,6 @@ public class QGrid extends JPanel {
         //             TransferHandler.getCopyAction().getValue(Action.NAME));
 
         ToolTipManager.sharedInstance().unregisterComponent(table);
-        ToolTipManager.sharedInstance().unregisterComponent(table.getTableHeader());
 
         DefaultTableCellRenderer dcr = new CellRenderer(table);
         //    dcr.setHorizontalAlignment(SwingConstants.RIGHT);
@@ -207,6 +210,8 @@ public class QGrid extends JPanel {
 
         setLayout(new BorderLayout());
         this.add(scrollPane, BorderLayout.CENTER);
+        if (model instanceof KTableModel && ((KTableModel) model).isSortable())
+            this.add(filterBar((KTableModel) model), BorderLayout.NORTH);
 
         UserAction copyExcelFormatAction = new UserAction("Copy (Excel format)",
                 Util.COPY_ICON,
@@ -328,6 +333,55 @@ public class QGrid extends JPanel {
         });
     }
 
+    // a where clause over the columns, the rows are filtered again as it is typed
+    private JPanel filterBar(final KTableModel model) {
+        final JTextField field = new JTextField();
+        final Color foreground = field.getForeground();
+        final String help = "Filter rows, e.g. sym in `a`b and price within 10 20 or null size";
+        field.setToolTipText(help);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                update();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                update();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                update();
+            }
+
+            private void update() {
+                String text = field.getText().trim();
+                RowFilter f = null;
+                if (!text.isEmpty()) {
+                    try {
+                        f = RowFilter.compile(text, model);
+                    }
+                    catch (IllegalArgumentException e) {
+                        field.setForeground(Color.RED);
+                        field.setToolTipText(e.getMessage());
+                        return;
+                    }
+                }
+                field.setForeground(foreground);
+                field.setToolTipText(help);
+                model.filterInBackground(f, table.getTableHeader()::repaint);
+            }
+        });
+        field.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "clearFilter");
+        field.getActionMap().put("clearFilter", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                field.setText("");
+            }
+        });
+        JPanel bar = new JPanel(new BorderLayout());
+        bar.add(new JLabel(" Filter "), BorderLayout.WEST);
+        bar.add(field, BorderLayout.CENTER);
+        return bar;
+    }
+
     private boolean isTableSelectionValid() {
         int numcols = table.getSelectedColumnCount();
         int numrows = table.getSelectedRowCount();
@@ -88,6 +88,7 @@ public class StudioPanel extends JPanel implements Observer,WindowListener {
     private UserAction executeAction;
     private UserAction executeCurrentLineAction;
     private UserAction refreshAction;
+    private UserAction subscribeAction;
     private UserAction aboutAction;
     private UserAction exitAction;
     private UserAction settingsAction;
@@ -1316,6 +1317,17 @@ public class StudioPanel extends JPanel implements Observer,WindowListener {
             }
         };
 
+        subscribeAction = new UserAction(I18n.getString("Subscribe"),
+                                         Util.TABLE_ICON,
+                                         "Send the full or highlighted text as a subscription and show what the server publishes",
+                                         new Integer(KeyEvent.VK_B),
+                                         null) {
+
+            public void actionPerformed(ActionEvent e) {
+                subscribe(getEditorText(textArea));
+            }
+        };
+
         aboutAction = new UserAction(I18n.getString("About"),
                                      Util.ABOUT_ICON,
                                      "About Studio for kdb+",
@@ -1588,6 +1600,8 @@ public class StudioPanel extends JPanel implements Observer,WindowListener {
         menu.add(new JMenuItem(executeAction));
         menu.add(new JMenuItem(stopAction));
         menu.add(new JMenuItem(refreshAction));
+        menu.addSeparator();
+        menu.add(new JMenuItem(subscribeAction));
         menubar.add(menu);
 
         menu = new JMenu(I18n.getString("Window"));
@@ -2033,6 +2047,48 @@ public class StudioPanel extends JPanel implements Observer,WindowListener {
         executeK4Query(lastQuery);
     }
 
+    // the subscription gets a connection of its own, which is closed along with its tab
+    private void subscribe(final String text) {
+        final Server s = server;
+        if (text == null || s == null)
+            return;
+
+        if(tabbedPane.getTabCount()>=Config.getInstance().getResultTabsCount()) {
+            tabbedPane.remove(0);
+        }
+        final Subscription subscription = new Subscription();
+        SubscriptionPanel panel = new SubscriptionPanel(subscription);
+        TabPanel frame = new TabPanel("Live " + s.getName() + " ", Util.TABLE_ICON, panel);
+        tabbedPane.addTab(frame.getTitle(),frame.getIcon(),frame.getComponent());
+        tabbedPane.setSelectedIndex(tabbedPane.getTabCount()-1);
+
+        Thread t = new Thread(() -> {
+            try {
+                c c = ConnectionPool.getInstance().newConnection(s);
+                if (c == null)
+                    throw new IOException("Failed to initialize connection");
+                c.reconnect(true);
+                c.setMemoryBudget(new MemoryBudget(null));
+                subscription.subscribe(c, new K.KCharacterVector(text));
+            }
+            catch (Throwable e) {
+                subscription.close();
+                String message = e.getMessage();
+                if ((message == null) || (message.length() == 0))
+                    message = e.toString();
+                final String detail = message;
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this.frame,
+                                                                               "\nFailed to subscribe on " + s.getHost() + ":" + s.getPort() + "\n\nError detail is\n\n" + detail + "\n\n",
+                                                                               "Studio for kdb+",
+                                                                               JOptionPane.ERROR_MESSAGE,
+                                                                               Util.ERROR_ICON));
+            }
+        });
+        t.setName("Subscriber");
+        t.setDaemon(true);
+        t.start();
+    }
+
     public void executeQueryCurrentLine() {
         executeQuery(getCurrentLineEditorText(textArea));
     }
@@ -2128,6 +2184,52 @@ public class StudioPanel extends JPanel implements Observer,WindowListener {
         return text;
     }
 
+    // results too large for the memory left are only decoded if the user agrees
+    private final MemoryBudget budget = new MemoryBudget(this::approveLargeResult);
+    // estimated heap held by each result tab
+    private final Map<Component,Long> retained = new WeakHashMap<>();
+    private String executionStatus = "";
+
+    private MemoryBudget.Decision approveLargeResult(final long estimate, final long available, final boolean spillable) {
+        final MemoryBudget.Decision[] decision = {MemoryBudget.Decision.REFUSE};
+        final MemoryBudget.Decision[] choices = spillable ? new MemoryBudget.Decision[]{MemoryBudget.Decision.LOAD, MemoryBudget.Decision.SPILL, MemoryBudget.Decision.REFUSE}
+                                                          : new MemoryBudget.Decision[]{MemoryBudget.Decision.LOAD, MemoryBudget.Decision.REFUSE};
+        final String[] labels = spillable ? new String[]{"Load", "Keep on disk", "Cancel"} : new String[]{"Load", "Cancel"};
+        Runnable ask = () -> {
+            int i = JOptionPane.showOptionDialog(frame,
+                                                 "\nThe result needs about " + MemoryBudget.format(estimate) + " but only " + MemoryBudget.format(available) + " of memory is available.\n\n" +
+                                                 "Loading it may exhaust the memory of Studio." + (spillable ? " Keeping it on disk maps it from a temporary file\nand reads it as it is shown, sorting a column still loads all of it." : "") + "\n\n",
+                                                 "Studio for kdb+",
+                                                 JOptionPane.DEFAULT_OPTION,
+                                                 JOptionPane.WARNING_MESSAGE,
+                                                 Util.WARNING_ICON,
+                                                 labels,
+                                                 labels[labels.length - 1]);
+            if (i >= 0)
+                decision[0] = choices[i];
+        };
+        if (SwingUtilities.isEventDispatchThread())
+            ask.run();
+        else
+            try {
+                SwingUtilities.invokeAndWait(ask);
+            }
+            catch (Exception e) {
+                return MemoryBudget.Decision.REFUSE;
+            }
+        return decision[0];
+    }
+
+    private void updateStatus() {
+        long total = 0;
+        for (int i = 0; i < tabbedPane.getTabCount(); i++) {
+            Long n = retained.get(tabbedPane.getComponentAt(i));
+            if (n != null)
+                total += n;
+        }
+        Utilities.setStatusText(textArea, executionStatus + (total > 0 ? "   Results hold about " + MemoryBudget.format(total) + " of " + MemoryBudget.format(Runtime.getRuntime().maxMemory()) : ""));
+    }
+
     private void processK4Results(K.KBase r) throws c.K4Exception {
         if (r != null) {
             exportAction.setEnabled(true);
@@ -2145,7 +2247,9 @@ public class StudioPanel extends JPanel implements Observer,WindowListener {
                         Util.TABLE_ICON,
                         grid);
 //                frame.setTitle(I18n.getString("Table")+" [" + grid.getRowCount() + " "+I18n.getString("rows")+"] ");
-                tabbedPane.addTab(frame.getTitle(),frame.getIcon(),frame.getComponent());
+                long bytes = MemoryBudget.retained(r);
+                retained.put(grid, bytes);
+                tabbedPane.addTab(frame.getTitle(),frame.getIcon(),frame.getComponent(),"About " + MemoryBudget.format(bytes));
             } else {
                 chartAction.setEnabled(false);
                 openInExcel.setEnabled(false);
@@ -2212,6 +2316,7 @@ public class StudioPanel extends JPanel implements Observer,WindowListener {
                     c = ConnectionPool.getInstance().leaseConnection(s);
                     ConnectionPool.getInstance().checkConnected(c);
                     c.setFrame(frame);
+                    c.setMemoryBudget(budget);
                     long startTime=System.currentTimeMillis();
                     c.k(new K.KCharacterVector(text));
                     r = c.getResponse();
@@ -2280,8 +2385,9 @@ public class StudioPanel extends JPanel implements Observer,WindowListener {
                         }
                     else
                         try {
-                            Utilities.setStatusText(textArea, "Last execution time:"+(execTime>0?""+execTime:"<1")+" mS");
+                            executionStatus = "Last execution time:"+(execTime>0?""+execTime:"<1")+" mS";
                             processK4Results(r);
+                            updateStatus();
                         }
                         catch (Exception e) {
                             e.printStackTrace(System.err);
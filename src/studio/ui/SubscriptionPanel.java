@@ -0,0 +1,137 @@
+package studio.ui;
+
+import java.awt.BorderLayout;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import studio.kdb.Config;
+import studio.kdb.K;
+import studio.kdb.LimitedWriter;
+import studio.kdb.LiveTableModel;
+import studio.kdb.Subscription;
+
+// shows (`upd;`t;data) messages pushed on a subscription as one live table per t, other messages in a log
+public class SubscriptionPanel extends JPanel {
+    private static final int MAX_LINES = 1000;
+
+    private final Subscription subscription;
+    private final JTabbedPane tabs = new JTabbedPane(JTabbedPane.BOTTOM);
+    private final JTextArea text = new JTextArea();
+    private final Map<String,LiveTableModel> models = new ConcurrentHashMap<>();
+    private final JLabel status = new JLabel();
+    private final List<String> pending = new ArrayList<>();
+    private final Timer timer;
+    private final SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss.SSS");
+
+    public SubscriptionPanel(Subscription subscription) {
+        super(new BorderLayout());
+        this.subscription = subscription;
+        text.setEditable(false);
+        text.setFont(Config.getInstance().getFont());
+        tabs.addTab("Messages", new JScrollPane(text));
+        add(tabs, BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        subscription.addListener(this::received);
+        // messages are batched onto the EDT so a fast feed cannot flood it
+        timer = new Timer(250, e -> flush());
+        timer.start();
+    }
+
+    public Subscription getSubscription() {
+        return subscription;
+    }
+
+    private void received(K.KBase x) {
+        if (update(x))
+            return;
+        String line = time.format(new Date()) + "  " + describe(x);
+        synchronized (pending) {
+            pending.add(line);
+            if (pending.size() > MAX_LINES)
+                pending.remove(0);
+        }
+    }
+
+    private boolean update(K.KBase x) {
+        if (!(x instanceof K.KList) || ((K.KList) x).getLength() != 3)
+            return false;
+        K.KBase[] a = (K.KBase[]) ((K.KList) x).getArray();
+        if (!(a[0] instanceof K.KSymbol) || !(a[1] instanceof K.KSymbol))
+            return false;
+        final String name = ((K.KSymbol) a[1]).s;
+        LiveTableModel m = models.get(name);
+        if (m != null)
+            return m.add(a[2]);
+        K.KBase[] c = LiveTableModel.columnsOf(a[2]);
+        if (c == null)
+            return false;
+        K.KSymbolVector names;
+        if (a[2] instanceof K.Flip)
+            names = ((K.Flip) a[2]).x;
+        else {
+            names = new K.KSymbolVector(c.length);
+            for (int i = 0; i < c.length; i++)
+                ((String[]) names.getArray())[i] = "x" + i;
+        }
+        final LiveTableModel model = new LiveTableModel(names, c, Config.getInstance().getLiveTableCapacity());
+        models.put(name, model);
+        model.add(a[2]);
+        SwingUtilities.invokeLater(() -> {
+            model.flush();
+            tabs.insertTab(name, Util.TABLE_ICON, new QGrid(model), null, tabs.getTabCount() - 1);
+            if (tabs.getTabCount() == 2)
+                tabs.setSelectedIndex(0);
+        });
+        return true;
+    }
+
+    private static String describe(K.KBase x) {
+        LimitedWriter w = new LimitedWriter(Config.getInstance().getMaxCharsInTableCell());
+        try {
+            x.toString(w, true);
+        }
+        catch (IOException | LimitedWriter.LimitException ex) {
+        }
+        return w.toString();
+    }
+
+    private void flush() {
+        String[] lines;
+        synchronized (pending) {
+            lines = pending.toArray(new String[0]);
+            pending.clear();
+        }
+        if (lines.length > 0) {
+            StringBuilder sb = new StringBuilder();
+            for (String line : lines)
+                sb.append(line).append('\n');
+            text.append(sb.toString());
+            Document doc = text.getDocument();
+            int excess = text.getLineCount() - 1 - MAX_LINES;
+            if (excess > 0)
+                try {
+                    doc.remove(0, text.getLineStartOffset(excess));
+                }
+                catch (BadLocationException ex) {
+                }
+            text.setCaretPosition(doc.getLength());
+        }
+        status.setText(" " + (subscription.isClosed() ? "Closed" : "Live") + "  received " + subscription.getReceived() + "  dropped " + subscription.getDropped() + "  (" + subscription.getPolicy().name().toLowerCase() + " when full)");
+    }
+
+    // the tab was closed or pushed out by newer results
+    public void removeNotify() {
+        super.removeNotify();
+        timer.stop();
+        subscription.close();
+        for (LiveTableModel m : models.values())
+            m.dispose();
+    }
+}
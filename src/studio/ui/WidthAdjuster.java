@@ -7,9 +7,21 @@ import javax.swing.*;
 import javax.swing.table.*;
 
 public class WidthAdjuster extends MouseAdapter {
-    public WidthAdjuster(JTable table) {
+    public WidthAdjuster(final JTable table) {
         this.table = table;
         table.getTableHeader().addMouseListener(this);
+        // escape stops a sort still running before it cancels an edit
+        final Action cancel = table.getActionMap().get("cancel");
+        table.getActionMap().put("cancel", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) {
+                TableModel model = table.getModel();
+                if (model instanceof KTableModel && ((KTableModel) model).isSorting()) {
+                    ((KTableModel) model).cancelSort();
+                    table.getTableHeader().repaint();
+                } else if (cancel != null)
+                    cancel.actionPerformed(e);
+            }
+        });
     }
 
     public void mousePressed(MouseEvent evt) {
@@ -31,16 +43,8 @@ public class WidthAdjuster extends MouseAdapter {
                 KTableModel ktm = (KTableModel) table.getModel();
                 //         if(Sorter.isSortable(ktm.getColumn(column)))
                 {
-                    if (ktm.isSortedAsc())
-                        ktm.desc(column);
-                    else if (ktm.isSortedDesc())
-                        ktm.removeSort();
-                    else
-                        ktm.asc(column);
-
-                    ktm.fireTableDataChanged();
-                    if (h != null)
-                        h.repaint();
+                    ktm.cycleSort(column, e.isShiftDown(), h::repaint);
+                    h.repaint();
                 }
             }
         }